@@ -0,0 +1,119 @@
+package pathfinding;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * Theta*, an any-angle variant of A*. It expands the grid like A*, but when a
+ * neighbor can see the parent of the current node (see LineOfSight) it is
+ * linked straight to that parent instead of to the current node. The parents
+ * are therefore the corners of the path, and the path it returns is its
+ * waypoints: straight segments at any angle instead of a staircase of single
+ * steps. Waypoints.expand() gives the cells along them.
+ *
+ * The costs are the Euclidean lengths of the segments, in fixed point
+ * (COST_SCALE per cell), so the g costs and the priorities still fit the
+ * integer arrays and the heap of a SearchWorkspace. The terrain costs of the
+ * grid are not used. The heuristic is always the Euclidean distance, which
+ * never overestimates the length of a segment.
+ */
+public final class AnyAngleSearch {
+
+    /**
+     * The cost of a step of one cell.
+     */
+    public static final int COST_SCALE = 1000;
+
+    private AnyAngleSearch() {
+    }
+
+    /**
+     * The Theta* Search algorithm.
+     *
+     * @param grid The grid to search.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param workspace The workspace, already started for this grid.
+     * @param listener Receives the exploration events.
+     * @return The result of the search; its path is the waypoints.
+     */
+    public static SearchResult thetaStar(GridMap grid, int start, int goal, SearchWorkspace workspace,
+            SearchListener listener) {
+
+        int columns = grid.getColumns();
+        int goalColumn = goal % columns;
+        int goalRow = goal / columns;
+        int nrOfExploredNodes = 0;
+
+        workspace.visit(start, start, 0);
+        workspace.heapPush(0, start);
+
+        while (!workspace.isHeapEmpty()) {
+            int current = workspace.heapPop();
+
+            if (workspace.isClosed(current)) {
+                continue;
+            }
+            workspace.close(current);
+
+            if (current == goal) {
+                int[] path = workspace.pathTo(start, goal);
+                listener.pathFound(path);
+                return new SearchResult(path, nrOfExploredNodes, workspace.getMemoryBytes());
+            }
+            listener.expanded(current);
+
+            int column = current % columns;
+            int row = current / columns;
+            int parent = workspace.getParent(current);
+
+            for (int direction = 0; direction < 4; direction++) {
+                int nextColumn = column + GridSearch.DX[direction];
+                int nextRow = row + GridSearch.DY[direction];
+
+                if (grid.isBlocked(nextColumn, nextRow)) {
+                    continue;
+                }
+
+                int next = nextRow * columns + nextColumn;
+                if (workspace.isClosed(next)) {
+                    continue;
+                }
+
+                // Link to the parent of the current node if it can be seen, otherwise to the current node.
+                int from = current;
+                int newCost = workspace.getG(current) + COST_SCALE;
+                if (current != start && LineOfSight.isClear(grid, parent, next)) {
+                    from = parent;
+                    newCost = workspace.getG(parent) + cost(parent, next, columns);
+                }
+
+                boolean visited = workspace.isVisited(next);
+                if (!visited || newCost < workspace.getG(next)) {
+                    if (!visited) {
+                        nrOfExploredNodes++;
+                    }
+                    workspace.visit(next, from, newCost);
+                    workspace.heapPush(newCost + heuristic(nextColumn, nextRow, goalColumn, goalRow), next);
+                    listener.pushed(next);
+                }
+            }
+        }
+        return SearchResult.notFound(nrOfExploredNodes, workspace.getMemoryBytes());
+    }
+
+    /**
+     * @return The Euclidean length of the segment between two cells, rounded.
+     */
+    private static int cost(int from, int to, int columns) {
+        return (int) Math.round(COST_SCALE * Math.hypot(to % columns - from % columns, to / columns - from / columns));
+    }
+
+    /**
+     * @return The Euclidean distance to the goal, rounded down so it never
+     * overestimates.
+     */
+    private static int heuristic(int column, int row, int goalColumn, int goalRow) {
+        return (int) (COST_SCALE * Math.hypot(goalColumn - column, goalRow - row));
+    }
+}
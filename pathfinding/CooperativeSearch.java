@@ -0,0 +1,307 @@
+package pathfinding;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * Windowed Hierarchical Cooperative A* (WHCA*): routes many agents on one grid
+ * so that no two agents are in the same cell at the same timestep and no two
+ * agents swap cells.
+ *
+ * The agents plan one after the other. Each agent runs an A* in space-time,
+ * where a node is a (cell, timestep) pair and the actions are the four moves
+ * and waiting, limited to the next "window" timesteps. The cells a plan
+ * occupies are written into a ReservationTable, and the agents that plan later
+ * avoid them. Until an agent plans, its current cell is reserved for it
+ * through the whole window, so the agents that plan first go around it and
+ * it can always wait where it is: no plan ever collides. The agents follow
+ * their plans for part of the window, the table is cleared and everybody
+ * plans again from where they are, with the priorities rotated so no agent is
+ * always last.
+ *
+ * A space-time node is the int t * cells + cell, so cells * (window + 1) must
+ * fit in an int. The nodes are kept in the sparse mode of a SearchWorkspace (a
+ * hash table of the touched nodes), so a plan needs memory for the nodes it
+ * touches, not for the whole space-time grid.
+ *
+ * The heuristic is the true distance to the goal ignoring the other agents,
+ * found with one backward BFS per goal, so the windowed searches are guided
+ * around obstacles and never get stuck behind them. The distances of the goals
+ * used most recently are cached, up to MAX_CACHED_DISTANCES distances in all;
+ * on a big grid with many agents, the goals that fall out of the cache are
+ * searched again when they are needed. Every move costs one
+ * timestep (the terrain costs of the grid are not used); waiting on the goal is
+ * free.
+ *
+ * Not thread safe; every thread needs its own CooperativeSearch.
+ */
+public final class CooperativeSearch {
+
+    /**
+     * The largest number of distances (ints) kept by the cache of the
+     * heuristic, 128 MB; the cache always holds at least one goal.
+     */
+    public static final int MAX_CACHED_DISTANCES = 1 << 25;
+
+    private final GridMap grid;
+    private final int columns;
+    private final int cells;
+    private final int window;
+    private final int stepsPerWindow;
+    private final ReservationTable reservations;
+    private final SearchWorkspace workspace = new SearchWorkspace();
+    private final Map<Integer, int[]> distances;
+
+    /**
+     * Follows each plan for half of the window before planning again.
+     *
+     * @param grid The grid.
+     * @param window The number of timesteps each agent plans ahead.
+     */
+    public CooperativeSearch(GridMap grid, int window) {
+        this(grid, window, Math.max(1, window / 2));
+    }
+
+    /**
+     * @param grid The grid.
+     * @param window The number of timesteps each agent plans ahead.
+     * @param stepsPerWindow The number of timesteps the agents follow their
+     * plans before planning again, at most window.
+     */
+    public CooperativeSearch(GridMap grid, int window, int stepsPerWindow) {
+        if (window < 1 || stepsPerWindow < 1 || stepsPerWindow > window) {
+            throw new IllegalArgumentException("Invalid window " + window + " / " + stepsPerWindow);
+        }
+        if ((long) grid.getColumns() * grid.getRows() * (window + 1) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A window of " + window + " is too long for a grid of "
+                    + grid.getColumns() + "x" + grid.getRows());
+        }
+        this.grid = grid;
+        this.columns = grid.getColumns();
+        this.cells = grid.getColumns() * grid.getRows();
+        this.window = window;
+        this.stepsPerWindow = stepsPerWindow;
+        this.reservations = new ReservationTable(64 * (window + 1));
+        final int cachedGoals = Math.max(1, MAX_CACHED_DISTANCES / cells);
+        this.distances = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+                return size() > cachedGoals;
+            }
+        };
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Routes the agents until all of them are on their goals or maxSteps
+     * timesteps have passed.
+     *
+     * @param starts The starting cell of each agent, all different.
+     * @param goals The goal of each agent, all different.
+     * @param maxSteps The largest number of timesteps.
+     * @return The cell of every agent at every timestep.
+     */
+    public MultiAgentResult route(int[] starts, int[] goals, int maxSteps) {
+        if (starts.length != goals.length) {
+            throw new IllegalArgumentException("Every agent needs a start and a goal");
+        }
+        int agents = starts.length;
+        int[] position = starts.clone();
+        int[][] plans = new int[agents][window + 1];
+        int[][] trails = new int[agents][16];
+        for (int agent = 0; agent < agents; agent++) {
+            trails[agent][0] = starts[agent];
+        }
+
+        int nrOfExploredNodes = 0;
+        int nrOfFailedPlans = 0;
+        int time = 0;
+        int cycle = 0;
+
+        while (time < maxSteps && arrived(position, goals) < agents) {
+            reservations.clear();
+            // Where the agents are now, kept for the whole window until each agent plans.
+            for (int agent = 0; agent < agents; agent++) {
+                for (int t = 0; t <= window; t++) {
+                    reservations.reserve(position[agent], t, agent);
+                }
+            }
+
+            for (int i = 0; i < agents; i++) {
+                int agent = (i + cycle) % agents;
+                for (int t = 1; t <= window; t++) {
+                    reservations.release(position[agent], t, agent);
+                }
+                int explored = plan(agent, position[agent], goals[agent], plans[agent]);
+                if (explored < 0) {
+                    nrOfFailedPlans++;
+                    explored = -explored - 1;
+                }
+                nrOfExploredNodes += explored;
+                for (int t = 1; t <= window; t++) {
+                    if (!reservations.reserve(plans[agent][t], t, agent)) {
+                        throw new IllegalStateException("Agent " + agent + " planned into a reserved cell");
+                    }
+                }
+            }
+
+            int steps = Math.min(stepsPerWindow, maxSteps - time);
+            for (int step = 1; step <= steps; step++) {
+                time++;
+                for (int agent = 0; agent < agents; agent++) {
+                    position[agent] = plans[agent][step];
+                    if (time == trails[agent].length) {
+                        trails[agent] = Arrays.copyOf(trails[agent], time * 2);
+                    }
+                    trails[agent][time] = position[agent];
+                }
+                if (arrived(position, goals) == agents) {
+                    break;
+                }
+            }
+            cycle++;
+        }
+
+        for (int agent = 0; agent < agents; agent++) {
+            trails[agent] = Arrays.copyOf(trails[agent], time + 1);
+        }
+        return new MultiAgentResult(trails, arrived(position, goals), nrOfExploredNodes, nrOfFailedPlans);
+    }
+
+    private static int arrived(int[] position, int[] goals) {
+        int arrived = 0;
+        for (int agent = 0; agent < position.length; agent++) {
+            if (position[agent] == goals[agent]) {
+                arrived++;
+            }
+        }
+        return arrived;
+    }
+
+    /**
+     * The space-time A* of one agent. A node is the state t * cells + cell, so
+     * the generation-stamped hash table of the workspace serves as the visited
+     * set, the closed set, g and the parents.
+     *
+     * @param agent The agent.
+     * @param start Its current cell.
+     * @param goal Its goal.
+     * @param plan Receives its cell at the timesteps 0 to window.
+     * @return The number of expanded nodes, or -(expanded + 1) if no
+     * collision-free plan exists and the agent waits where it is (which is
+     * safe, because its cell was reserved for it).
+     */
+    private int plan(int agent, int start, int goal, int[] plan) {
+        int[] distance = distancesTo(goal);
+        int nrOfExploredNodes = 0;
+
+        workspace.beginSparse();
+        workspace.visit(start, start, 0);
+        workspace.heapPush(distance[start], start);
+
+        while (!workspace.isHeapEmpty()) {
+            int state = workspace.heapPop();
+            if (workspace.isClosed(state)) {
+                continue;
+            }
+            workspace.close(state);
+
+            int time = state / cells;
+            int cell = state - time * cells;
+
+            if (time == window) {
+                int[] states = workspace.pathTo(start, state);
+                for (int t = 0; t <= window; t++) {
+                    plan[t] = states[t] - t * cells;
+                }
+                return nrOfExploredNodes;
+            }
+            nrOfExploredNodes++;
+
+            int column = cell % columns;
+            int row = cell / columns;
+
+            // The four moves, then waiting.
+            for (int direction = 0; direction <= 4; direction++) {
+                int next = cell;
+                if (direction < 4) {
+                    int nextColumn = column + GridSearch.DX[direction];
+                    int nextRow = row + GridSearch.DY[direction];
+                    if (grid.isBlocked(nextColumn, nextRow)) {
+                        continue;
+                    }
+                    next = nextRow * columns + nextColumn;
+                }
+
+                if (!reservations.isFree(next, time + 1, agent)) {
+                    continue;
+                }
+                if (next != cell) {
+                    int other = reservations.getAgent(next, time);
+                    if (other != ReservationTable.FREE && other != agent
+                            && reservations.getAgent(cell, time + 1) == other) {
+                        continue;
+                    }
+                }
+
+                int nextState = (time + 1) * cells + next;
+                int newCost = workspace.getG(state) + (cell == goal && next == goal ? 0 : 1);
+                if (!workspace.isVisited(nextState) || newCost < workspace.getG(nextState)) {
+                    workspace.visit(nextState, state, newCost);
+                    workspace.heapPush(newCost + distance[next], nextState);
+                }
+            }
+        }
+
+        Arrays.fill(plan, start);
+        return -nrOfExploredNodes - 1;
+    }
+
+    /**
+     * The true distance of every cell to the goal, ignoring the other agents,
+     * from the cache or found with a backward BFS. The cells that can not reach
+     * the goal get the number of cells, which is more than any real distance.
+     *
+     * @param goal The goal.
+     * @return The distance of every cell.
+     */
+    private int[] distancesTo(int goal) {
+        int[] distance = distances.get(goal);
+        if (distance != null) {
+            return distance;
+        }
+        distance = new int[cells];
+        Arrays.fill(distance, cells);
+        int[] queue = new int[cells];
+        int head = 0;
+        int tail = 0;
+        distance[goal] = 0;
+        queue[tail++] = goal;
+        while (head < tail) {
+            int cell = queue[head++];
+            int column = cell % columns;
+            int row = cell / columns;
+            for (int direction = 0; direction < 4; direction++) {
+                int nextColumn = column + GridSearch.DX[direction];
+                int nextRow = row + GridSearch.DY[direction];
+                if (grid.isBlocked(nextColumn, nextRow)) {
+                    continue;
+                }
+                int next = nextRow * columns + nextColumn;
+                if (distance[next] == cells) {
+                    distance[next] = distance[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        distances.put(goal, distance);
+        return distance;
+    }
+}
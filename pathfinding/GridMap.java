@@ -0,0 +1,36 @@
+package pathfinding;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * A rectangular grid of cells that a search can run on. Cells are addressed
+ * with (column, row) coordinates, or with the index row * columns + column.
+ */
+public interface GridMap {
+
+    int getColumns();
+
+    int getRows();
+
+    /**
+     * Determines whether a cell can not be entered. Cells outside of the grid
+     * must be reported as blocked.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return True if the cell is an obstacle or outside of the grid.
+     */
+    boolean isBlocked(int column, int row);
+
+    /**
+     * The cost of entering a cell. Grids without terrain cost 1 everywhere.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return The cost of entering the cell, at least 1.
+     */
+    default int getCost(int column, int row) {
+        return 1;
+    }
+}
@@ -0,0 +1,258 @@
+package pathfinding;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * The four searching/pathfinding algorithms, BFS, DFS, A* and GBFS (Greedy
+ * Best-First Search), on any GridMap. The memory-bounded alternatives to A*
+ * are in MemoryBoundedSearch, the any-angle Theta* is in AnyAngleSearch and
+ * the A* with its per-cell state off-heap is OffHeapSearch; all of them can
+ * be run through search() as well. The searches do not draw anything;
+ * they report what they explore to a SearchListener, and all of their state
+ * lives in a SearchWorkspace that is reused from one query to the next.
+ *
+ * The neighbors of a cell are visited in the order left, right, top, bottom.
+ */
+public final class GridSearch {
+
+    /**
+     * The algorithms that can be run through search().
+     */
+    public enum Algorithm {
+        BFS("BFS"),
+        DFS("DFS"),
+        ASTAR("A*"),
+        GREEDY("GBFS"),
+        IDA_STAR("IDA*"),
+        FRINGE("Fringe"),
+        THETA_STAR("Theta*"),
+        OFF_HEAP_ASTAR("Off-heap A*");
+
+        private final String displayName;
+
+        Algorithm(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    static final int[] DX = {-1, 1, 0, 0};
+    static final int[] DY = {0, 0, -1, 1};
+
+    private GridSearch() {
+    }
+
+    /**
+     * Runs one of the algorithms.
+     *
+     * @param algorithm The algorithm to run.
+     * @param grid The grid to search.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param heuristic The heuristic of the informed searches.
+     * @param workspace The workspace, already started for this grid.
+     * @param listener Receives the exploration events.
+     * @return The result of the search.
+     */
+    public static SearchResult search(Algorithm algorithm, GridMap grid, int start, int goal, Heuristic heuristic,
+            SearchWorkspace workspace, SearchListener listener) {
+        switch (algorithm) {
+            case BFS:
+                return bfs(grid, start, goal, workspace, listener);
+            case DFS:
+                return dfs(grid, start, goal, workspace, listener);
+            case ASTAR:
+                return aStar(grid, start, goal, heuristic, workspace, listener);
+            case GREEDY:
+                return greedy(grid, start, goal, heuristic, workspace, listener);
+            case IDA_STAR:
+                return MemoryBoundedSearch.idaStar(grid, start, goal, heuristic, listener);
+            case FRINGE:
+                return MemoryBoundedSearch.fringe(grid, start, goal, heuristic, workspace, listener);
+            case THETA_STAR:
+                return AnyAngleSearch.thetaStar(grid, start, goal, workspace, listener);
+            case OFF_HEAP_ASTAR:
+                return OffHeapSearch.aStar(grid, start, goal, heuristic, workspace, listener);
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        }
+    }
+
+    /**
+     * The Breadth-First Search algorithm. The queue of the workspace (FIFO) is
+     * used for the implementation. The goal is checked when it is discovered.
+     *
+     * @param grid The grid to search.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param workspace The workspace, already started for this grid.
+     * @param listener Receives the exploration events.
+     * @return The result of the search.
+     */
+    public static SearchResult bfs(GridMap grid, int start, int goal, SearchWorkspace workspace, SearchListener listener) {
+        return uninformed(grid, start, goal, workspace, listener, true);
+    }
+
+    /**
+     * The Depth-First Search algorithm. The stack of the workspace (LIFO) is
+     * used for the implementation. The goal is checked when it is discovered.
+     *
+     * @param grid The grid to search.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param workspace The workspace, already started for this grid.
+     * @param listener Receives the exploration events.
+     * @return The result of the search.
+     */
+    public static SearchResult dfs(GridMap grid, int start, int goal, SearchWorkspace workspace, SearchListener listener) {
+        return uninformed(grid, start, goal, workspace, listener, false);
+    }
+
+    private static SearchResult uninformed(GridMap grid, int start, int goal, SearchWorkspace workspace,
+            SearchListener listener, boolean fifo) {
+
+        int columns = grid.getColumns();
+        int nrOfExploredNodes = 0;
+
+        workspace.visit(start, start, 0);
+        workspace.addLast(start);
+
+        if (start == goal) {
+            int[] path = {start};
+            listener.pathFound(path);
+            return new SearchResult(path, nrOfExploredNodes, workspace.getMemoryBytes());
+        }
+
+        while (!workspace.isOpenEmpty()) {
+            int current = fifo ? workspace.removeFirst() : workspace.removeLast();
+            listener.expanded(current);
+
+            int column = current % columns;
+            int row = current / columns;
+
+            for (int direction = 0; direction < 4; direction++) {
+                int nextColumn = column + DX[direction];
+                int nextRow = row + DY[direction];
+
+                if (grid.isBlocked(nextColumn, nextRow)) {
+                    continue;
+                }
+
+                int next = nextRow * columns + nextColumn;
+
+                if (next == goal) {
+                    workspace.visit(next, current, workspace.getG(current) + 1);
+                    int[] path = workspace.pathTo(start, goal);
+                    listener.pathFound(path);
+                    return new SearchResult(path, nrOfExploredNodes, workspace.getMemoryBytes());
+                }
+                if (!workspace.isVisited(next)) {
+                    nrOfExploredNodes++;
+                    workspace.visit(next, current, workspace.getG(current) + 1);
+                    workspace.addLast(next);
+                    listener.pushed(next);
+                }
+            }
+        }
+        return SearchResult.notFound(nrOfExploredNodes, workspace.getMemoryBytes());
+    }
+
+    /**
+     * The A* Search algorithm. Implemented with the binary heap of the
+     * workspace, which gives a priority to each visited node. The formula for
+     * the calculation of the priority is f(n) = g(n) + h(n) where g(n) is the
+     * cost of the path from the start node to n, and h(n) is the heuristic that
+     * estimates the cost from n to the goal node.
+     *
+     * @param grid The grid to search.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param heuristic The heuristic, h(n).
+     * @param workspace The workspace, already started for this grid.
+     * @param listener Receives the exploration events.
+     * @return The result of the search.
+     */
+    public static SearchResult aStar(GridMap grid, int start, int goal, Heuristic heuristic, SearchWorkspace workspace,
+            SearchListener listener) {
+        return informed(grid, start, goal, heuristic, workspace, listener, true);
+    }
+
+    /**
+     * The Greedy Best-First Search algorithm. Implemented with the binary heap
+     * of the workspace. The formula for the calculation of the priority is
+     * f(n) = h(n), where h(n) is the smallest estimation from n to the goal.
+     *
+     * @param grid The grid to search.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param heuristic The heuristic, h(n).
+     * @param workspace The workspace, already started for this grid.
+     * @param listener Receives the exploration events.
+     * @return The result of the search.
+     */
+    public static SearchResult greedy(GridMap grid, int start, int goal, Heuristic heuristic, SearchWorkspace workspace,
+            SearchListener listener) {
+        return informed(grid, start, goal, heuristic, workspace, listener, false);
+    }
+
+    private static SearchResult informed(GridMap grid, int start, int goal, Heuristic heuristic,
+            SearchWorkspace workspace, SearchListener listener, boolean withCost) {
+
+        int columns = grid.getColumns();
+        int goalColumn = goal % columns;
+        int goalRow = goal / columns;
+        int nrOfExploredNodes = 0;
+
+        workspace.visit(start, start, 0);
+        workspace.heapPush(0, start);
+
+        while (!workspace.isHeapEmpty()) {
+            int current = workspace.heapPop();
+
+            // A cell can be in the heap more than once; only its best entry is expanded.
+            if (workspace.isClosed(current)) {
+                continue;
+            }
+            workspace.close(current);
+
+            if (current == goal) {
+                int[] path = workspace.pathTo(start, goal);
+                listener.pathFound(path);
+                return new SearchResult(path, nrOfExploredNodes, workspace.getMemoryBytes());
+            }
+            listener.expanded(current);
+
+            int column = current % columns;
+            int row = current / columns;
+
+            for (int direction = 0; direction < 4; direction++) {
+                int nextColumn = column + DX[direction];
+                int nextRow = row + DY[direction];
+
+                if (grid.isBlocked(nextColumn, nextRow)) {
+                    continue;
+                }
+
+                int next = nextRow * columns + nextColumn;
+                int newCost = workspace.getG(current) + grid.getCost(nextColumn, nextRow);
+                boolean visited = workspace.isVisited(next);
+
+                if (!visited || (withCost && newCost < workspace.getG(next) && !workspace.isClosed(next))) {
+                    if (!visited) {
+                        nrOfExploredNodes++;
+                    }
+                    workspace.visit(next, current, newCost);
+                    int h = heuristic.estimate(nextColumn, nextRow, goalColumn, goalRow);
+                    workspace.heapPush(withCost ? newCost + h : h, next);
+                    listener.pushed(next);
+                }
+            }
+        }
+        return SearchResult.notFound(nrOfExploredNodes, workspace.getMemoryBytes());
+    }
+}
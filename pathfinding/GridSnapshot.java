@@ -0,0 +1,276 @@
+package pathfinding;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * An immutable, versioned view of the grid: its size, the obstacles and the
+ * starting/ending points. Every edit returns a new snapshot with a version one
+ * higher than the snapshot it was derived from, so a search that runs against
+ * one snapshot is never affected by the edits made while it runs.
+ *
+ * The obstacles are kept in a bitmap that is split into blocks of 4096 cells.
+ * An edit copies only the block it touches and shares all the others with the
+ * previous snapshot (copy-on-write), so editing a big grid stays cheap.
+ *
+ * Cells are addressed with (column, row) coordinates, or with the index
+ * row * columns + column.
+ */
+public final class GridSnapshot implements GridMap {
+
+    /**
+     * The size, in pixels, of one cell when the grid is drawn.
+     */
+    public static final int CELL_SIZE = 20;
+
+    private static final int BLOCK_SHIFT = 12;
+    private static final int BLOCK_CELLS = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_CELLS - 1;
+
+    private final int columns, rows;
+    private final long[][] blocks;
+    private final int obstacleCount;
+    private final int start, goal;
+    private final long version;
+
+    private GridSnapshot(int columns, int rows, long[][] blocks, int obstacleCount, int start, int goal, long version) {
+        this.columns = columns;
+        this.rows = rows;
+        this.blocks = blocks;
+        this.obstacleCount = obstacleCount;
+        this.start = start;
+        this.goal = goal;
+        this.version = version;
+    }
+
+    /**
+     * Creates a grid with randomly placed obstacles and random starting/ending
+     * points. The starting and ending points are never obstacles and never the
+     * same cell.
+     *
+     * @param columns The number of columns.
+     * @param rows The number of rows.
+     * @param obstacles The number of obstacles to place.
+     * @param version The version of the new snapshot.
+     * @param random The source of randomness.
+     * @return The new snapshot.
+     */
+    public static GridSnapshot random(int columns, int rows, int obstacles, long version, Random random) {
+        long cells = (long) columns * rows;
+        if (columns <= 0 || rows <= 0 || cells > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid grid size " + columns + "x" + rows);
+        }
+        if (obstacles < 0 || obstacles > cells - 2) {
+            throw new IllegalArgumentException("Invalid number of obstacles " + obstacles);
+        }
+
+        long[][] blocks = new long[(int) ((cells + BLOCK_CELLS - 1) >> BLOCK_SHIFT)][BLOCK_CELLS >> 6];
+
+        int start = random.nextInt((int) cells);
+        int goal;
+        do {
+            goal = random.nextInt((int) cells);
+        } while (goal == start);
+
+        int placed = 0;
+        while (placed < obstacles) {
+            int cell = random.nextInt((int) cells);
+            if (cell != start && cell != goal && !get(blocks, cell)) {
+                blocks[cell >> BLOCK_SHIFT][(cell & BLOCK_MASK) >> 6] |= 1L << cell;
+                placed++;
+            }
+        }
+
+        return new GridSnapshot(columns, rows, blocks, placed, start, goal, version);
+    }
+
+    /**
+     * Creates a grid with the given obstacles and starting/ending points, e.g.
+     * one read back from a file.
+     *
+     * @param columns The number of columns.
+     * @param rows The number of rows.
+     * @param blocked The indexes of the obstacles.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param version The version of the new snapshot.
+     * @return The new snapshot.
+     */
+    public static GridSnapshot of(int columns, int rows, BitSet blocked, int start, int goal, long version) {
+        long cells = (long) columns * rows;
+        if (columns <= 0 || rows <= 0 || cells > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid grid size " + columns + "x" + rows);
+        }
+        if (start < 0 || start >= cells || goal < 0 || goal >= cells) {
+            throw new IllegalArgumentException("Start or goal outside of the grid");
+        }
+
+        long[][] blocks = new long[(int) ((cells + BLOCK_CELLS - 1) >> BLOCK_SHIFT)][BLOCK_CELLS >> 6];
+        int placed = 0;
+        for (int cell = blocked.nextSetBit(0); cell >= 0 && cell < cells; cell = blocked.nextSetBit(cell + 1)) {
+            if (cell != start && cell != goal) {
+                blocks[cell >> BLOCK_SHIFT][(cell & BLOCK_MASK) >> 6] |= 1L << cell;
+                placed++;
+            }
+        }
+
+        return new GridSnapshot(columns, rows, blocks, placed, start, goal, version);
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCellCount() {
+        return columns * rows;
+    }
+
+    public int getObstacleCount() {
+        return obstacleCount;
+    }
+
+    /**
+     * @return The index of the starting cell.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return The index of the ending (goal) cell.
+     */
+    public int getGoal() {
+        return goal;
+    }
+
+    /**
+     * @return The version of this snapshot. Results computed against a
+     * snapshot are stale once the shared grid has moved to a newer version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int index(int column, int row) {
+        return row * columns + column;
+    }
+
+    public int column(int cell) {
+        return cell % columns;
+    }
+
+    public int row(int cell) {
+        return cell / columns;
+    }
+
+    public boolean contains(int column, int row) {
+        return column >= 0 && row >= 0 && column < columns && row < rows;
+    }
+
+    /**
+     * Determines whether a cell can not be entered. Cells outside of the grid
+     * are treated as obstacles.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return True if the cell is an obstacle or outside of the grid.
+     */
+    @Override
+    public boolean isBlocked(int column, int row) {
+        return !contains(column, row) || get(blocks, index(column, row));
+    }
+
+    public boolean isBlocked(int cell) {
+        return get(blocks, cell);
+    }
+
+    /**
+     * Converts a cell index to the pixel coordinates of the top-left corner of
+     * the cell, which is how the panel draws it.
+     *
+     * @param cell The index of the cell.
+     * @return A new point in pixel coordinates.
+     */
+    public Point toPixel(int cell) {
+        return new Point(column(cell) * CELL_SIZE, row(cell) * CELL_SIZE);
+    }
+
+    /**
+     * @return A new list with the pixel coordinates of every obstacle.
+     */
+    public List<Point> obstacles() {
+        List<Point> points = new ArrayList<>(obstacleCount);
+        int cells = getCellCount();
+        for (int cell = 0; cell < cells; cell++) {
+            if (get(blocks, cell)) {
+                points.add(toPixel(cell));
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Returns a snapshot in which the given cell is an obstacle. Cells outside
+     * of the grid, the starting point and the goal are left unchanged.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return The new snapshot, or this snapshot if nothing changed.
+     */
+    public GridSnapshot withObstacle(int column, int row) {
+        if (!contains(column, row)) {
+            return this;
+        }
+        int cell = index(column, row);
+        if (cell == start || cell == goal || get(blocks, cell)) {
+            return this;
+        }
+        return new GridSnapshot(columns, rows, copyOnWrite(cell, true), obstacleCount + 1, start, goal, version + 1);
+    }
+
+    /**
+     * Returns a snapshot in which the given cell is free.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @return The new snapshot, or this snapshot if nothing changed.
+     */
+    public GridSnapshot withoutObstacle(int column, int row) {
+        if (!contains(column, row)) {
+            return this;
+        }
+        int cell = index(column, row);
+        if (!get(blocks, cell)) {
+            return this;
+        }
+        return new GridSnapshot(columns, rows, copyOnWrite(cell, false), obstacleCount - 1, start, goal, version + 1);
+    }
+
+    private long[][] copyOnWrite(int cell, boolean blocked) {
+        long[][] copy = blocks.clone();
+        int block = cell >> BLOCK_SHIFT;
+        copy[block] = blocks[block].clone();
+        if (blocked) {
+            copy[block][(cell & BLOCK_MASK) >> 6] |= 1L << cell;
+        } else {
+            copy[block][(cell & BLOCK_MASK) >> 6] &= ~(1L << cell);
+        }
+        return copy;
+    }
+
+    private static boolean get(long[][] blocks, int cell) {
+        return (blocks[cell >> BLOCK_SHIFT][(cell & BLOCK_MASK) >> 6] & (1L << cell)) != 0;
+    }
+}
@@ -0,0 +1,43 @@
+package pathfinding;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * The two distance metrics the informed searches can use as their heuristic.
+ * Both work on any pair of coordinates, so they are used with cell coordinates
+ * by the searches and with pixel coordinates by the panel.
+ */
+public enum Heuristic {
+
+    /**
+     * The sum of the absolute value of the difference between the two
+     * coordinates of each point.
+     */
+    MANHATTAN {
+        @Override
+        public int estimate(int x1, int y1, int x2, int y2) {
+            return Math.abs(x1 - x2) + Math.abs(y1 - y2);
+        }
+    },
+    /**
+     * The straight-line distance, rounded down so that it never overestimates.
+     */
+    EUCLIDEAN {
+        @Override
+        public int estimate(int x1, int y1, int x2, int y2) {
+            return (int) Math.sqrt(Math.pow(x1 - x2, 2) + Math.pow(y1 - y2, 2));
+        }
+    };
+
+    /**
+     * Estimates the distance between two points.
+     *
+     * @param x1 The x coordinate (column) of one point.
+     * @param y1 The y coordinate (row) of one point.
+     * @param x2 The x coordinate (column) of the other point.
+     * @param y2 The y coordinate (row) of the other point.
+     * @return The estimated distance.
+     */
+    public abstract int estimate(int x1, int y1, int x2, int y2);
+}
@@ -0,0 +1,314 @@
+package pathfinding;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * Two alternatives to A* that do not keep every generated node in a priority
+ * queue. Both use the same heuristics as A* (see Heuristic) and find the same
+ * optimal paths.
+ *
+ * IDA* (Iterative Deepening A*) runs depth-first searches bounded by
+ * f(n) = g(n) + h(n), raising the bound to the smallest f that exceeded it
+ * after every iteration. Its memory is the current path plus a fixed-size
+ * transposition table, which cuts off a node that was already reached with a
+ * lower or equal cost in the same iteration. It also remembers, in one bit
+ * per cell, which cells it has ever reached: when an iteration is only cut off
+ * at cells that were already reached, the reachable area has been searched
+ * completely and there is no path. An optional limit on the explored nodes
+ * bounds the work of a single query.
+ *
+ * Fringe Search keeps the frontier in two plain lists, "now" and "later",
+ * instead of a heap. The nodes of "now" whose f is within the threshold are
+ * expanded (their children are visited right after them); the others are moved
+ * to "later", which becomes "now" with a raised threshold in the next
+ * iteration. The g costs and parents are cached in a SearchWorkspace.
+ */
+public final class MemoryBoundedSearch {
+
+    /**
+     * The largest default size of the IDA* transposition table (12 bytes per
+     * entry). Smaller grids get a table with about as many entries as cells.
+     */
+    public static final int TRANSPOSITION_ENTRIES = 1 << 16;
+
+    /**
+     * The default node limit of IDA*: NODE_LIMIT_PER_CELL nodes per cell of
+     * the grid, but at least MIN_NODE_LIMIT. On a big grid without a path, the
+     * iterations can explore the reachable area many times over before the
+     * search knows that there is no path.
+     */
+    public static final int NODE_LIMIT_PER_CELL = 64;
+    public static final int MIN_NODE_LIMIT = 1 << 22;
+
+    private MemoryBoundedSearch() {
+    }
+
+    /**
+     * The IDA* Search algorithm with a transposition table of at most
+     * TRANSPOSITION_ENTRIES entries and the default node limit.
+     *
+     * @param grid The grid to search.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param heuristic The heuristic, h(n).
+     * @param listener Receives the exploration events.
+     * @return The result of the search.
+     */
+    public static SearchResult idaStar(GridMap grid, int start, int goal, Heuristic heuristic, SearchListener listener) {
+        int cells = grid.getColumns() * grid.getRows();
+        int entries = Math.min(TRANSPOSITION_ENTRIES, Integer.highestOneBit(Math.max(1, cells - 1)) << 1);
+        int maxExploredNodes = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(MIN_NODE_LIMIT, (long) NODE_LIMIT_PER_CELL * cells));
+        return idaStar(grid, start, goal, heuristic, listener, entries, maxExploredNodes);
+    }
+
+    /**
+     * The IDA* Search algorithm. The depth-first search of each iteration uses
+     * an explicit stack, so long paths can not overflow the call stack.
+     *
+     * @param grid The grid to search.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param heuristic The heuristic, h(n).
+     * @param listener Receives the exploration events.
+     * @param transpositionEntries The size of the transposition table, a power
+     * of two. The table is lossy: a newer entry replaces an older one.
+     * @param maxExploredNodes The search gives up, with a result whose
+     * isLimitExceeded() is true, after exploring more nodes than this.
+     * @return The result of the search.
+     */
+    public static SearchResult idaStar(GridMap grid, int start, int goal, Heuristic heuristic, SearchListener listener,
+            int transpositionEntries, int maxExploredNodes) {
+
+        if (Integer.bitCount(transpositionEntries) != 1) {
+            throw new IllegalArgumentException("The transposition table size must be a power of two");
+        }
+
+        int columns = grid.getColumns();
+        int goalColumn = goal % columns;
+        int goalRow = goal / columns;
+
+        int mask = transpositionEntries - 1;
+        int shift = 32 - Integer.numberOfTrailingZeros(transpositionEntries);
+        int[] tableCell = new int[transpositionEntries];
+        int[] tableCost = new int[transpositionEntries];
+        int[] tableIteration = new int[transpositionEntries];
+        long[] reached = new long[(grid.getColumns() * grid.getRows() + 63) >>> 6];
+        reached[start >>> 6] |= 1L << start;
+
+        // The stack holds the current path: the cell, its g and the next neighbor to try.
+        int[] stackCell = new int[64];
+        int[] stackCost = new int[64];
+        int[] stackDirection = new int[64];
+
+        int nrOfExploredNodes = 0;
+        int bound = heuristic.estimate(start % columns, start / columns, goalColumn, goalRow);
+        int iteration = 0;
+
+        while (true) {
+            iteration++;
+            int nextBound = Integer.MAX_VALUE;
+            // The number of cut-offs at cells that were never reached, which the next iteration can reach.
+            int unreachedCutOffs = 0;
+            int depth = 0;
+            stackCell[0] = start;
+            stackCost[0] = 0;
+            stackDirection[0] = 0;
+            int startSlot = slot(start, shift, mask);
+            tableIteration[startSlot] = iteration;
+            tableCell[startSlot] = start;
+            tableCost[startSlot] = 0;
+
+            while (depth >= 0) {
+                int current = stackCell[depth];
+
+                if (stackDirection[depth] == 0) {
+                    if (current == goal) {
+                        int[] path = Arrays.copyOf(stackCell, depth + 1);
+                        listener.pathFound(path);
+                        return new SearchResult(path, nrOfExploredNodes,
+                                idaMemory(stackCell.length, transpositionEntries, reached.length));
+                    }
+                    listener.expanded(current);
+                }
+
+                if (stackDirection[depth] == 4) {
+                    depth--;
+                    continue;
+                }
+
+                int direction = stackDirection[depth]++;
+                int column = current % columns;
+                int row = current / columns;
+                int nextColumn = column + GridSearch.DX[direction];
+                int nextRow = row + GridSearch.DY[direction];
+
+                if (grid.isBlocked(nextColumn, nextRow)) {
+                    continue;
+                }
+                int next = nextRow * columns + nextColumn;
+                if (depth > 0 && next == stackCell[depth - 1]) {
+                    continue;
+                }
+
+                int cost = stackCost[depth] + grid.getCost(nextColumn, nextRow);
+                int f = cost + heuristic.estimate(nextColumn, nextRow, goalColumn, goalRow);
+                if (f > bound) {
+                    nextBound = Math.min(nextBound, f);
+                    if ((reached[next >>> 6] & (1L << next)) == 0) {
+                        unreachedCutOffs++;
+                    }
+                    continue;
+                }
+
+                // Transposition cut-off: this cell was already reached as cheaply in this iteration.
+                int slot = slot(next, shift, mask);
+                if (tableIteration[slot] == iteration && tableCell[slot] == next && tableCost[slot] <= cost) {
+                    continue;
+                }
+                tableIteration[slot] = iteration;
+                tableCell[slot] = next;
+                tableCost[slot] = cost;
+
+                if (nrOfExploredNodes == maxExploredNodes) {
+                    return SearchResult.limitExceeded(nrOfExploredNodes,
+                            idaMemory(stackCell.length, transpositionEntries, reached.length));
+                }
+                nrOfExploredNodes++;
+                reached[next >>> 6] |= 1L << next;
+                listener.pushed(next);
+
+                depth++;
+                if (depth == stackCell.length) {
+                    stackCell = Arrays.copyOf(stackCell, depth * 2);
+                    stackCost = Arrays.copyOf(stackCost, depth * 2);
+                    stackDirection = Arrays.copyOf(stackDirection, depth * 2);
+                }
+                stackCell[depth] = next;
+                stackCost[depth] = cost;
+                stackDirection[depth] = 0;
+            }
+
+            if (nextBound == Integer.MAX_VALUE || unreachedCutOffs == 0) {
+                return SearchResult.notFound(nrOfExploredNodes,
+                        idaMemory(stackCell.length, transpositionEntries, reached.length));
+            }
+            bound = nextBound;
+        }
+    }
+
+    /**
+     * Fibonacci hashing of a cell to a slot of the transposition table.
+     */
+    private static int slot(int cell, int shift, int mask) {
+        return (cell * 0x9E3779B9) >>> shift & mask;
+    }
+
+    private static long idaMemory(int stackCapacity, int transpositionEntries, int reachedWords) {
+        return 12L * stackCapacity + 12L * transpositionEntries + 8L * reachedWords;
+    }
+
+    /**
+     * The Fringe Search algorithm.
+     *
+     * @param grid The grid to search.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param heuristic The heuristic, h(n).
+     * @param workspace The workspace, already started for this grid. It caches
+     * the g costs and the parents.
+     * @param listener Receives the exploration events.
+     * @return The result of the search.
+     */
+    public static SearchResult fringe(GridMap grid, int start, int goal, Heuristic heuristic, SearchWorkspace workspace,
+            SearchListener listener) {
+
+        int columns = grid.getColumns();
+        int goalColumn = goal % columns;
+        int goalRow = goal / columns;
+        int nrOfExploredNodes = 0;
+
+        // A list entry is g << 32 | cell. An entry whose g is higher than the cached g is stale.
+        long[] now = new long[64];
+        long[] later = new long[64];
+        int nowSize = 0;
+        int laterSize = 0;
+
+        workspace.visit(start, start, 0);
+        now[nowSize++] = start;
+        int threshold = heuristic.estimate(start % columns, start / columns, goalColumn, goalRow);
+
+        while (nowSize > 0) {
+            int nextThreshold = Integer.MAX_VALUE;
+
+            while (nowSize > 0) {
+                long entry = now[--nowSize];
+                int current = (int) entry;
+                int cost = (int) (entry >>> 32);
+
+                if (cost > workspace.getG(current)) {
+                    continue;
+                }
+
+                int column = current % columns;
+                int row = current / columns;
+                int f = cost + heuristic.estimate(column, row, goalColumn, goalRow);
+
+                if (f > threshold) {
+                    nextThreshold = Math.min(nextThreshold, f);
+                    if (laterSize == later.length) {
+                        later = Arrays.copyOf(later, laterSize * 2);
+                    }
+                    later[laterSize++] = entry;
+                    continue;
+                }
+
+                if (current == goal) {
+                    int[] path = workspace.pathTo(start, goal);
+                    listener.pathFound(path);
+                    return new SearchResult(path, nrOfExploredNodes,
+                            workspace.getMemoryBytes() + 8L * (now.length + later.length));
+                }
+                listener.expanded(current);
+
+                // Pushed in reverse, so that the children are taken left, right, top, bottom.
+                for (int direction = 3; direction >= 0; direction--) {
+                    int nextColumn = column + GridSearch.DX[direction];
+                    int nextRow = row + GridSearch.DY[direction];
+
+                    if (grid.isBlocked(nextColumn, nextRow)) {
+                        continue;
+                    }
+
+                    int next = nextRow * columns + nextColumn;
+                    int newCost = cost + grid.getCost(nextColumn, nextRow);
+                    boolean visited = workspace.isVisited(next);
+
+                    if (visited && newCost >= workspace.getG(next)) {
+                        continue;
+                    }
+                    if (!visited) {
+                        nrOfExploredNodes++;
+                    }
+                    workspace.visit(next, current, newCost);
+                    if (nowSize == now.length) {
+                        now = Arrays.copyOf(now, nowSize * 2);
+                    }
+                    now[nowSize++] = ((long) newCost << 32) | next;
+                    listener.pushed(next);
+                }
+            }
+
+            long[] swap = now;
+            now = later;
+            later = swap;
+            nowSize = laterSize;
+            laterSize = 0;
+            threshold = nextThreshold;
+        }
+        return SearchResult.notFound(nrOfExploredNodes, workspace.getMemoryBytes() + 8L * (now.length + later.length));
+    }
+}
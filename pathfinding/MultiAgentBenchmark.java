@@ -0,0 +1,115 @@
+package pathfinding;
+
+import java.util.Random;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * A headless benchmark of CooperativeSearch. It routes a growing number of
+ * agents with random starts and goals on a random grid, checks that no two
+ * agents collide, and reports how many agents are routed per second. A
+ * collision is a bug of CooperativeSearch, so the benchmark stops with an
+ * exception at the first run that has one.
+ *
+ * Usage: MultiAgentBenchmark [columns rows obstacles window maxAgents]
+ */
+public class MultiAgentBenchmark {
+
+    public static void main(String[] args) {
+        int columns = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int obstacles = args.length > 2 ? Integer.parseInt(args[2]) : columns * rows / 10;
+        int window = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        int maxAgents = args.length > 4 ? Integer.parseInt(args[4]) : 512;
+
+        Random random = new Random(42);
+        GridSnapshot grid = GridSnapshot.random(columns, rows, obstacles, 0, random);
+        int maxSteps = 4 * (columns + rows);
+
+        System.out.printf("Grid %dx%d, %d obstacles, window %d, at most %d steps%n", columns, rows, obstacles, window,
+                maxSteps);
+        System.out.printf("%8s %8s %8s %10s %12s %8s %10s %12s%n", "agents", "arrived", "steps", "explored",
+                "failed plans", "ms", "collisions", "agents/s");
+
+        // Warm up the JIT before measuring.
+        run(grid, window, Math.min(32, maxAgents), maxSteps, new Random(1), false);
+
+        for (int agents = 8; agents <= maxAgents; agents *= 2) {
+            run(grid, window, agents, maxSteps, new Random(agents), true);
+        }
+    }
+
+    private static void run(GridSnapshot grid, int window, int agents, int maxSteps, Random random, boolean print) {
+        int[] reachable = reachableCells(grid, grid.getStart());
+        if (reachable.length < 2 * agents) {
+            if (print) {
+                System.out.printf("%8d  not enough free cells%n", agents);
+            }
+            return;
+        }
+        // A random permutation of the reachable cells gives distinct starts and goals.
+        for (int i = reachable.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = reachable[i];
+            reachable[i] = reachable[j];
+            reachable[j] = swap;
+        }
+        int[] starts = new int[agents];
+        int[] goals = new int[agents];
+        System.arraycopy(reachable, 0, starts, 0, agents);
+        System.arraycopy(reachable, agents, goals, 0, agents);
+
+        CooperativeSearch search = new CooperativeSearch(grid, window);
+        long begin = System.nanoTime();
+        MultiAgentResult result = search.route(starts, goals, maxSteps);
+        long nanos = System.nanoTime() - begin;
+        int collisions = collisions(result);
+
+        if (print) {
+            System.out.printf("%8d %8d %8d %10d %12d %8.1f %10d %12.0f%n", agents, result.getNrOfArrivedAgents(),
+                    result.getNrOfSteps(), result.getNrOfExploredNodes(), result.getNrOfFailedPlans(), nanos / 1e6,
+                    collisions, result.getNrOfArrivedAgents() / (nanos / 1e9));
+        }
+        if (collisions > 0) {
+            throw new IllegalStateException(collisions + " collisions with " + agents + " agents");
+        }
+    }
+
+    /**
+     * @return The cells that can be reached from the given cell.
+     */
+    private static int[] reachableCells(GridSnapshot grid, int from) {
+        SearchWorkspace workspace = SearchWorkspace.forThread(grid.getCellCount());
+        GridSearch.bfs(grid, from, -1, workspace, SearchListener.NONE);
+        int[] cells = new int[workspace.getNrOfTouchedCells()];
+        int count = 0;
+        for (int cell = 0; cell < grid.getCellCount(); cell++) {
+            if (workspace.isVisited(cell)) {
+                cells[count++] = cell;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * @return The number of times two agents were in the same cell, or swapped
+     * cells, at the same timestep.
+     */
+    private static int collisions(MultiAgentResult result) {
+        int[][] paths = result.getPaths();
+        int collisions = 0;
+        for (int t = 0; t < paths[0].length; t++) {
+            for (int a = 0; a < paths.length; a++) {
+                for (int b = a + 1; b < paths.length; b++) {
+                    if (paths[a][t] == paths[b][t]) {
+                        collisions++;
+                    } else if (t > 0 && paths[a][t] == paths[b][t - 1] && paths[b][t] == paths[a][t - 1]) {
+                        collisions++;
+                    }
+                }
+            }
+        }
+        return collisions;
+    }
+}
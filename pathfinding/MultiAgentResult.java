@@ -0,0 +1,72 @@
+package pathfinding;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * The outcome of routing a group of agents with CooperativeSearch: the cell of
+ * every agent at every timestep, how many agents reached their goals and how
+ * much work it took.
+ */
+public final class MultiAgentResult {
+
+    private final int[][] paths;
+    private final int nrOfArrivedAgents;
+    private final int nrOfExploredNodes;
+    private final int nrOfFailedPlans;
+
+    public MultiAgentResult(int[][] paths, int nrOfArrivedAgents, int nrOfExploredNodes, int nrOfFailedPlans) {
+        this.paths = paths;
+        this.nrOfArrivedAgents = nrOfArrivedAgents;
+        this.nrOfExploredNodes = nrOfExploredNodes;
+        this.nrOfFailedPlans = nrOfFailedPlans;
+    }
+
+    /**
+     * @return For every agent, its cell at every timestep, starting with its
+     * starting cell. All the paths have the same length, getNrOfSteps() + 1.
+     * The arrays must not be modified.
+     */
+    public int[][] getPaths() {
+        return paths;
+    }
+
+    public int getNrOfAgents() {
+        return paths.length;
+    }
+
+    /**
+     * @return The number of timesteps the agents moved.
+     */
+    public int getNrOfSteps() {
+        return paths.length == 0 ? 0 : paths[0].length - 1;
+    }
+
+    /**
+     * @return The number of agents that were on their goal after the last
+     * timestep.
+     */
+    public int getNrOfArrivedAgents() {
+        return nrOfArrivedAgents;
+    }
+
+    public boolean isSolved() {
+        return nrOfArrivedAgents == paths.length;
+    }
+
+    /**
+     * @return The number of space-time nodes expanded by all the windowed
+     * searches.
+     */
+    public int getNrOfExploredNodes() {
+        return nrOfExploredNodes;
+    }
+
+    /**
+     * @return How many times an agent found no collision-free plan for a window
+     * and had to wait where it was.
+     */
+    public int getNrOfFailedPlans() {
+        return nrOfFailedPlans;
+    }
+}
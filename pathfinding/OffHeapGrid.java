@@ -0,0 +1,226 @@
+package pathfinding;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * A grid whose obstacles and terrain costs are stored outside of the Java heap,
+ * in a MemorySegment. The segment is either allocated in native memory or
+ * mapped straight from a file, so grids far bigger than the heap can be
+ * searched without putting any pressure on the garbage collector.
+ *
+ * Layout of the segment (and of the file):
+ *
+ * header: magic (int), format version (int), columns (int), rows (int)
+ * obstacles: one bit per cell, padded to a multiple of 8 bytes
+ * terrain: one unsigned byte per cell, the cost of entering the cell (1-255)
+ *
+ * Edits are not synchronized; a grid must not be edited while it is searched.
+ */
+public final class OffHeapGrid implements GridMap, AutoCloseable {
+
+    private static final int MAGIC = 0x50464752; // "PFGR"
+    private static final int FORMAT_VERSION = 1;
+    private static final long HEADER_BYTES = 16;
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final int columns, rows;
+    private final long terrainOffset;
+
+    private OffHeapGrid(Arena arena, MemorySegment segment, int columns, int rows) {
+        this.arena = arena;
+        this.segment = segment;
+        this.columns = columns;
+        this.rows = rows;
+        this.terrainOffset = HEADER_BYTES + bitmapBytes(columns, rows);
+    }
+
+    /**
+     * Allocates a grid in native memory. Every cell is free and costs 1.
+     *
+     * @param columns The number of columns.
+     * @param rows The number of rows.
+     * @return The new grid. It must be closed to release the memory.
+     */
+    public static OffHeapGrid allocate(int columns, int rows) {
+        Arena arena = Arena.ofShared();
+        MemorySegment segment = arena.allocate(byteSize(columns, rows), 8);
+        return initialize(arena, segment, columns, rows);
+    }
+
+    /**
+     * Creates (or truncates) a grid file and maps it into memory. Every cell is
+     * free and costs 1. Edits are written back to the file.
+     *
+     * @param file The file to create.
+     * @param columns The number of columns.
+     * @param rows The number of rows.
+     * @return The new grid. It must be closed to unmap the file.
+     * @throws IOException If the file can not be created or mapped.
+     */
+    public static OffHeapGrid create(Path file, int columns, int rows) throws IOException {
+        long size = byteSize(columns, rows);
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+            return initialize(arena, segment, columns, rows);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps an existing grid file into memory. Only the pages that a search
+     * touches are read from the disk.
+     *
+     * @param file The grid file.
+     * @param writable True to write edits back to the file.
+     * @return The grid. It must be closed to unmap the file.
+     * @throws IOException If the file can not be mapped or is not a grid file.
+     */
+    public static OffHeapGrid map(Path file, boolean writable) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            MemorySegment segment = channel.map(mode, 0, channel.size(), arena);
+
+            if (segment.byteSize() < HEADER_BYTES
+                    || segment.get(ValueLayout.JAVA_INT, 0) != MAGIC
+                    || segment.get(ValueLayout.JAVA_INT, 4) != FORMAT_VERSION) {
+                throw new IOException("Not a grid file: " + file);
+            }
+            int columns = segment.get(ValueLayout.JAVA_INT, 8);
+            int rows = segment.get(ValueLayout.JAVA_INT, 12);
+            if (columns <= 0 || rows <= 0 || (long) columns * rows > Integer.MAX_VALUE
+                    || segment.byteSize() < byteSize(columns, rows)) {
+                throw new IOException("Corrupt grid file: " + file);
+            }
+            return new OffHeapGrid(arena, segment, columns, rows);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the obstacles and terrain of another grid into native memory.
+     *
+     * @param source The grid to copy.
+     * @return The new grid. It must be closed to release the memory.
+     */
+    public static OffHeapGrid copyOf(GridMap source) {
+        OffHeapGrid grid = allocate(source.getColumns(), source.getRows());
+        for (int row = 0; row < grid.rows; row++) {
+            for (int column = 0; column < grid.columns; column++) {
+                grid.setBlocked(column, row, source.isBlocked(column, row));
+                grid.setCost(column, row, source.getCost(column, row));
+            }
+        }
+        return grid;
+    }
+
+    private static OffHeapGrid initialize(Arena arena, MemorySegment segment, int columns, int rows) {
+        segment.asSlice(0, HEADER_BYTES + bitmapBytes(columns, rows)).fill((byte) 0);
+        segment.asSlice(HEADER_BYTES + bitmapBytes(columns, rows), (long) columns * rows).fill((byte) 1);
+        segment.set(ValueLayout.JAVA_INT, 0, MAGIC);
+        segment.set(ValueLayout.JAVA_INT, 4, FORMAT_VERSION);
+        segment.set(ValueLayout.JAVA_INT, 8, columns);
+        segment.set(ValueLayout.JAVA_INT, 12, rows);
+        return new OffHeapGrid(arena, segment, columns, rows);
+    }
+
+    private static long bitmapBytes(int columns, int rows) {
+        return (((long) columns * rows + 63) >>> 6) << 3;
+    }
+
+    private static long byteSize(int columns, int rows) {
+        if (columns <= 0 || rows <= 0 || (long) columns * rows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid grid size " + columns + "x" + rows);
+        }
+        return HEADER_BYTES + bitmapBytes(columns, rows) + (long) columns * rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public boolean isBlocked(int column, int row) {
+        if (column < 0 || row < 0 || column >= columns || row >= rows) {
+            return true;
+        }
+        long cell = (long) row * columns + column;
+        return (segment.get(ValueLayout.JAVA_BYTE, HEADER_BYTES + (cell >>> 3)) & (1 << (cell & 7))) != 0;
+    }
+
+    @Override
+    public int getCost(int column, int row) {
+        return segment.get(ValueLayout.JAVA_BYTE, terrainOffset + (long) row * columns + column) & 0xFF;
+    }
+
+    public void setBlocked(int column, int row, boolean blocked) {
+        long cell = (long) row * columns + column;
+        long offset = HEADER_BYTES + (cell >>> 3);
+        byte bits = segment.get(ValueLayout.JAVA_BYTE, offset);
+        int mask = 1 << (cell & 7);
+        segment.set(ValueLayout.JAVA_BYTE, offset, (byte) (blocked ? bits | mask : bits & ~mask));
+    }
+
+    /**
+     * Sets the cost of entering a cell.
+     *
+     * @param column The column of the cell.
+     * @param row The row of the cell.
+     * @param cost The cost, between 1 and 255.
+     */
+    public void setCost(int column, int row, int cost) {
+        if (cost < 1 || cost > 255) {
+            throw new IllegalArgumentException("Invalid terrain cost " + cost);
+        }
+        segment.set(ValueLayout.JAVA_BYTE, terrainOffset + (long) row * columns + column, (byte) cost);
+    }
+
+    /**
+     * Writes the edits of a file-mapped grid back to the disk. Does nothing for
+     * grids allocated in native memory.
+     */
+    public void force() {
+        if (segment.isMapped()) {
+            segment.force();
+        }
+    }
+
+    /**
+     * @return The number of bytes the grid occupies outside of the heap.
+     */
+    public long byteSize() {
+        return segment.byteSize();
+    }
+
+    /**
+     * Releases the native memory or unmaps the file.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
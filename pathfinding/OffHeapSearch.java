@@ -0,0 +1,164 @@
+package pathfinding;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * An A* search that keeps its per-cell state outside of the Java heap: a
+ * stamp, the g cost and the parent of every cell (12 bytes per cell) live in
+ * MemorySegments. Together with an OffHeapGrid this searches grids whose
+ * per-cell state would not fit in the heap. Only the frontier, which grows
+ * with the cells a query touches and not with the grid, is the binary heap of
+ * a SearchWorkspace.
+ *
+ * Like SearchWorkspace, the segments belong to a thread and are reused from
+ * one query to the next: a cell is stamped with the generation of the query
+ * that visited it (and with its negation once it is closed), so starting a
+ * query only increments the generation. The segments are allocated, and zeroed,
+ * only when a bigger grid is searched; the old ones are released by the
+ * garbage collector.
+ *
+ * It expands the same nodes in the same order as GridSearch.aStar() and
+ * reports the same events to its SearchListener.
+ */
+public final class OffHeapSearch {
+
+    private static final ThreadLocal<OffHeapSearch> POOL = ThreadLocal.withInitial(OffHeapSearch::new);
+
+    private MemorySegment stamp = MemorySegment.NULL;
+    private MemorySegment g = MemorySegment.NULL;
+    private MemorySegment parent = MemorySegment.NULL;
+    private long capacity;
+    private int generation;
+
+    private OffHeapSearch() {
+    }
+
+    /**
+     * The A* Search algorithm, with the per-cell state off-heap.
+     *
+     * @param grid The grid to search.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param heuristic The heuristic, h(n).
+     * @param workspace The workspace whose heap holds the frontier; it can be
+     * started in sparse mode (see SearchWorkspace.forGrid()), since its
+     * per-cell arrays are not used.
+     * @param listener Receives the exploration events.
+     * @return The result of the search.
+     */
+    public static SearchResult aStar(GridMap grid, int start, int goal, Heuristic heuristic,
+            SearchWorkspace workspace, SearchListener listener) {
+        return POOL.get().run(grid, start, goal, heuristic, workspace, listener);
+    }
+
+    private SearchResult run(GridMap grid, int start, int goal, Heuristic heuristic, SearchWorkspace workspace,
+            SearchListener listener) {
+
+        int columns = grid.getColumns();
+        long cells = (long) columns * grid.getRows();
+        begin(cells);
+        int goalColumn = goal % columns;
+        int goalRow = goal / columns;
+        int nrOfExploredNodes = 0;
+
+        visit(start, start, 0);
+        workspace.heapPush(0, start);
+
+        while (!workspace.isHeapEmpty()) {
+            int current = workspace.heapPop();
+
+            // A cell can be in the heap more than once; only its best entry is expanded.
+            if (stamp.getAtIndex(ValueLayout.JAVA_INT, current) == -generation) {
+                continue;
+            }
+            stamp.setAtIndex(ValueLayout.JAVA_INT, current, -generation);
+
+            if (current == goal) {
+                int[] path = pathTo(start, goal);
+                listener.pathFound(path);
+                return new SearchResult(path, nrOfExploredNodes, getMemoryBytes(cells, workspace));
+            }
+            listener.expanded(current);
+
+            int column = current % columns;
+            int row = current / columns;
+            int currentCost = g.getAtIndex(ValueLayout.JAVA_INT, current);
+
+            for (int direction = 0; direction < 4; direction++) {
+                int nextColumn = column + GridSearch.DX[direction];
+                int nextRow = row + GridSearch.DY[direction];
+
+                if (grid.isBlocked(nextColumn, nextRow)) {
+                    continue;
+                }
+
+                int next = nextRow * columns + nextColumn;
+                int newCost = currentCost + grid.getCost(nextColumn, nextRow);
+                int nextStamp = stamp.getAtIndex(ValueLayout.JAVA_INT, next);
+                boolean visited = nextStamp == generation || nextStamp == -generation;
+
+                if (!visited || (nextStamp == generation && newCost < g.getAtIndex(ValueLayout.JAVA_INT, next))) {
+                    if (!visited) {
+                        nrOfExploredNodes++;
+                    }
+                    visit(next, current, newCost);
+                    workspace.heapPush(newCost + heuristic.estimate(nextColumn, nextRow, goalColumn, goalRow), next);
+                    listener.pushed(next);
+                }
+            }
+        }
+        return SearchResult.notFound(nrOfExploredNodes, getMemoryBytes(cells, workspace));
+    }
+
+    /**
+     * Starts a new query; the segments only grow when a bigger grid is
+     * searched.
+     */
+    private void begin(long cells) {
+        if (capacity < cells) {
+            // A new automatic arena per segment, so each old segment is freed as soon as it is unreachable.
+            stamp = Arena.ofAuto().allocate(cells * 4, 8);
+            g = Arena.ofAuto().allocate(cells * 4, 8);
+            parent = Arena.ofAuto().allocate(cells * 4, 8);
+            capacity = cells;
+        }
+        if (++generation == Integer.MAX_VALUE) {
+            // The stamps wrap around, so they are cleared once.
+            stamp.fill((byte) 0);
+            generation = 1;
+        }
+    }
+
+    private void visit(int cell, int from, int cost) {
+        stamp.setAtIndex(ValueLayout.JAVA_INT, cell, generation);
+        parent.setAtIndex(ValueLayout.JAVA_INT, cell, from);
+        g.setAtIndex(ValueLayout.JAVA_INT, cell, cost);
+    }
+
+    private int[] pathTo(int start, int goal) {
+        int length = 1;
+        for (int cell = goal; cell != start; cell = parent.getAtIndex(ValueLayout.JAVA_INT, cell)) {
+            length++;
+        }
+        int[] path = new int[length];
+        int cell = goal;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = cell;
+            cell = parent.getAtIndex(ValueLayout.JAVA_INT, cell);
+        }
+        return path;
+    }
+
+    /**
+     * @return The off-heap state of the cells of the grid, 12 bytes per cell,
+     * and the largest size of the heap.
+     */
+    private static long getMemoryBytes(long cells, SearchWorkspace workspace) {
+        return 12L * cells + 8L * workspace.getPeakHeapSize();
+    }
+}
@@ -0,0 +1,99 @@
+package pathfinding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * A connection to a PathServer. The requests are sent one at a time and each
+ * call blocks until its response arrives. Not thread safe; open one client per
+ * thread.
+ */
+public final class PathClient implements AutoCloseable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final int columns;
+    private final int rows;
+
+    private PathClient(Socket socket) throws IOException {
+        this.socket = socket;
+        try {
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != PathProtocol.MAGIC || in.readByte() != PathProtocol.VERSION) {
+                throw new IOException("Not a path server");
+            }
+            columns = in.readInt();
+            rows = in.readInt();
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Connects to a server on the loopback address.
+     *
+     * @param port The port of the server.
+     * @return The client.
+     * @throws IOException If the server can not be reached.
+     */
+    public static PathClient connect(int port) throws IOException {
+        return new PathClient(new Socket(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Asks for a path.
+     *
+     * @param algorithm The algorithm to run.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @return The response; its waypoints are the path, if one was found.
+     * @throws IOException If the connection fails.
+     */
+    public PathResponse query(GridSearch.Algorithm algorithm, int start, int goal) throws IOException {
+        return send(PathProtocol.QUERY, algorithm, start, goal);
+    }
+
+    /**
+     * Adds or removes the obstacle of a cell on the shared grid.
+     *
+     * @param cell The index of the cell.
+     * @param blocked True to add the obstacle, false to remove it.
+     * @return The response, with the new version of the grid.
+     * @throws IOException If the connection fails.
+     */
+    public PathResponse setBlocked(int cell, boolean blocked) throws IOException {
+        return send(blocked ? PathProtocol.BLOCK : PathProtocol.UNBLOCK, GridSearch.Algorithm.BFS, cell, 0);
+    }
+
+    private PathResponse send(byte operation, GridSearch.Algorithm algorithm, int first, int second)
+            throws IOException {
+        PathProtocol.writeRequest(out, operation, algorithm, first, second);
+        out.flush();
+        return PathProtocol.readResponse(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,150 @@
+package pathfinding;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * A load generator for PathServer. It opens a number of connections, each on
+ * its own virtual thread, and sends path queries between random cells in a
+ * closed loop (the next query is sent when the previous one is answered) for a
+ * fixed time. Then it reports the throughput and the latency percentiles.
+ *
+ * With port 0 it starts a server in the same process, on a random grid, and
+ * also reports how many queries the server solved per batch.
+ *
+ * Usage: PathLoadGenerator [port connections seconds algorithm]
+ */
+public class PathLoadGenerator {
+
+    private static final int WARM_UP_SECONDS = 2;
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        GridSearch.Algorithm algorithm = args.length > 3 ? GridSearch.Algorithm.valueOf(args[3])
+                : GridSearch.Algorithm.ASTAR;
+
+        PathServer server = null;
+        if (port == 0) {
+            SharedGrid grid = new SharedGrid(GridSnapshot.random(256, 256, 6553, 0, new Random(42)));
+            server = new PathServer(grid, 0);
+            port = server.getPort();
+            System.out.printf("Started a server on port %d with a 256x256 grid%n", port);
+        }
+
+        System.out.printf("%d connections, %s, %d s warm-up, %d s measured%n", connections, algorithm,
+                WARM_UP_SECONDS, seconds);
+        run(port, connections, WARM_UP_SECONDS, algorithm, new AtomicLong(), new AtomicLong());
+
+        long batches = server == null ? 0 : server.getBatcher().getNrOfBatches();
+        long queries = server == null ? 0 : server.getBatcher().getNrOfQueries();
+
+        long begin = System.nanoTime();
+        AtomicLong found = new AtomicLong();
+        AtomicLong limited = new AtomicLong();
+        long[] latencies = run(port, connections, seconds, algorithm, found, limited);
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("Requests:   %d (%d found, %d without a path, %d over the node limit)%n",
+                latencies.length, found.get(), latencies.length - found.get() - limited.get(), limited.get());
+        System.out.printf("Throughput: %.0f requests/s%n", latencies.length / elapsed);
+        System.out.printf("Latency:    p50 %.0f us, p90 %.0f us, p99 %.0f us, p99.9 %.0f us, max %.0f us%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), percentile(latencies, 1.0));
+
+        if (server != null) {
+            batches = server.getBatcher().getNrOfBatches() - batches;
+            queries = server.getBatcher().getNrOfQueries() - queries;
+            System.out.printf("Batches:    %d, %.1f queries per batch%n", batches,
+                    batches == 0 ? 0.0 : (double) queries / batches);
+            server.close();
+        }
+    }
+
+    /**
+     * Runs the connections for the given time.
+     *
+     * @param found Counts the requests that found a path.
+     * @param limited Counts the requests that exceeded the node limit.
+     * @return The latencies of all the requests, in nanoseconds.
+     */
+    private static long[] run(int port, int connections, int seconds, GridSearch.Algorithm algorithm,
+            AtomicLong found, AtomicLong limited) throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Future<long[]>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                long seed = i;
+                futures.add(executor.submit(() -> connection(port, deadline, algorithm, new Random(seed), found, limited)));
+            }
+        }
+
+        List<long[]> perConnection = new ArrayList<>();
+        int total = 0;
+        for (Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            perConnection.add(latencies);
+            total += latencies.length;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] latencies : perConnection) {
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+            offset += latencies.length;
+        }
+        return all;
+    }
+
+    /**
+     * Sends queries on one connection until the deadline.
+     *
+     * @return The latency of every query, in nanoseconds.
+     */
+    private static long[] connection(int port, long deadline, GridSearch.Algorithm algorithm, Random random,
+            AtomicLong found, AtomicLong limited) throws IOException {
+        long[] latencies = new long[1024];
+        int count = 0;
+        try (PathClient client = PathClient.connect(port)) {
+            int cells = client.getColumns() * client.getRows();
+            while (System.nanoTime() < deadline) {
+                int start = random.nextInt(cells);
+                int goal = random.nextInt(cells);
+                long sent = System.nanoTime();
+                PathResponse response = client.query(algorithm, start, goal);
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                }
+                latencies[count++] = System.nanoTime() - sent;
+                if (response.isFound()) {
+                    found.incrementAndGet();
+                } else if (response.isLimitExceeded()) {
+                    limited.incrementAndGet();
+                }
+            }
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    /**
+     * @return The latency at the given percentile, in microseconds.
+     */
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
@@ -0,0 +1,90 @@
+package pathfinding;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * The binary protocol between PathServer and PathClient. All numbers are
+ * big-endian.
+ *
+ * When a client connects, the server sends a hello: magic "PFSV" (int),
+ * protocol version (byte), columns (int), rows (int).
+ *
+ * Then the client sends requests of a fixed size of 10 bytes: the operation
+ * (byte), the algorithm, as the ordinal of GridSearch.Algorithm (byte), and two
+ * ints. QUERY asks for a path from the first int (start) to the second (goal);
+ * BLOCK and UNBLOCK add or remove the obstacle at the first int and ignore the
+ * second.
+ *
+ * The server answers every request, in order, with a response: the status
+ * (byte), the version of the grid that was used (long), the number of explored
+ * nodes (int), and the number of waypoints (int) followed by the waypoints
+ * (ints, see Waypoints). Only FOUND responses have waypoints. The explored
+ * nodes are the nodes the search pushed onto its frontier. A query that pushes
+ * more nodes than the budget of the server without reaching the goal gets
+ * LIMIT_EXCEEDED, with the nodes it pushed until then: whether a path exists
+ * is not known.
+ */
+public final class PathProtocol {
+
+    public static final int MAGIC = 0x50465356; // "PFSV"
+    public static final byte VERSION = 1;
+
+    public static final byte QUERY = 1;
+    public static final byte BLOCK = 2;
+    public static final byte UNBLOCK = 3;
+
+    public static final byte FOUND = 0;
+    public static final byte NO_PATH = 1;
+    public static final byte UPDATED = 2;
+    public static final byte BAD_REQUEST = 3;
+    public static final byte LIMIT_EXCEEDED = 4;
+
+    private PathProtocol() {
+    }
+
+    public static void writeHello(DataOutputStream out, GridMap grid) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(grid.getColumns());
+        out.writeInt(grid.getRows());
+    }
+
+    public static void writeRequest(DataOutputStream out, byte operation, GridSearch.Algorithm algorithm, int first,
+            int second) throws IOException {
+        out.writeByte(operation);
+        out.writeByte(algorithm.ordinal());
+        out.writeInt(first);
+        out.writeInt(second);
+    }
+
+    public static void writeResponse(DataOutputStream out, byte status, long version, int nrOfExploredNodes,
+            int[] waypoints) throws IOException {
+        out.writeByte(status);
+        out.writeLong(version);
+        out.writeInt(nrOfExploredNodes);
+        out.writeInt(waypoints.length);
+        for (int waypoint : waypoints) {
+            out.writeInt(waypoint);
+        }
+    }
+
+    public static PathResponse readResponse(DataInputStream in) throws IOException {
+        byte status = in.readByte();
+        long version = in.readLong();
+        int nrOfExploredNodes = in.readInt();
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt response: " + length + " waypoints");
+        }
+        int[] waypoints = new int[length];
+        for (int i = 0; i < length; i++) {
+            waypoints[i] = in.readInt();
+        }
+        return new PathResponse(status, version, nrOfExploredNodes, waypoints);
+    }
+}
@@ -0,0 +1,60 @@
+package pathfinding;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * A response of PathServer, as read by PathClient.
+ */
+public final class PathResponse {
+
+    private final byte status;
+    private final long version;
+    private final int nrOfExploredNodes;
+    private final int[] waypoints;
+
+    public PathResponse(byte status, long version, int nrOfExploredNodes, int[] waypoints) {
+        this.status = status;
+        this.version = version;
+        this.nrOfExploredNodes = nrOfExploredNodes;
+        this.waypoints = waypoints;
+    }
+
+    /**
+     * @return One of the statuses of PathProtocol.
+     */
+    public byte getStatus() {
+        return status;
+    }
+
+    public boolean isFound() {
+        return status == PathProtocol.FOUND;
+    }
+
+    /**
+     * @return True if the query spent the node budget of the server before
+     * it reached the goal.
+     */
+    public boolean isLimitExceeded() {
+        return status == PathProtocol.LIMIT_EXCEEDED;
+    }
+
+    /**
+     * @return The version of the grid the request was answered with.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getNrOfExploredNodes() {
+        return nrOfExploredNodes;
+    }
+
+    /**
+     * @return The waypoints of the path, empty if no path was found. The array
+     * must not be modified.
+     */
+    public int[] getWaypoints() {
+        return waypoints;
+    }
+}
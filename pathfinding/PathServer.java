@@ -0,0 +1,195 @@
+package pathfinding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * A headless server that answers path queries from other processes over a
+ * loopback socket, with the binary protocol of PathProtocol.
+ *
+ * Every connection is handled on its own virtual thread, which simply blocks
+ * while it reads a request or waits for its answer, so thousands of
+ * connections cost no more than their buffers. The queries of all the
+ * connections go through one QueryBatcher, which solves the ones that arrive
+ * together as one parallel batch against the same snapshot of the SharedGrid.
+ * The obstacle edits (BLOCK and UNBLOCK) publish new snapshots; the batches
+ * that start after an edit see it. A query that pushes more than
+ * MAX_EXPLORED_NODES nodes is answered with LIMIT_EXCEEDED.
+ *
+ * Usage: PathServer [port columns rows obstacles]
+ */
+public final class PathServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 7878;
+    public static final int MAX_BATCH = 256;
+    public static final long MAX_DELAY_NANOS = 100_000;
+    public static final int MAX_EXPLORED_NODES = 1 << 20;
+
+    private final SharedGrid grid;
+    private final ServerSocket serverSocket;
+    private final QueryBatcher batcher;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread acceptor;
+
+    /**
+     * Binds the server to the loopback address and starts accepting
+     * connections.
+     *
+     * @param grid The grid the queries are solved against.
+     * @param port The port, or 0 for any free port.
+     * @throws IOException If the port can not be bound.
+     */
+    public PathServer(SharedGrid grid, int port) throws IOException {
+        this.grid = grid;
+        this.serverSocket = new ServerSocket(port, 512, InetAddress.getLoopbackAddress());
+        this.batcher = new QueryBatcher(grid, MAX_BATCH, MAX_DELAY_NANOS, MAX_EXPLORED_NODES);
+        this.acceptor = Thread.ofPlatform().name("path-acceptor").daemon().start(this::accept);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public QueryBatcher getBatcher() {
+        return batcher;
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.submit(() -> serve(socket));
+            } catch (SocketException ex) {
+                // The server socket was closed.
+            } catch (IOException ex) {
+                System.out.println("ERROR IN accept .... " + ex);
+            }
+        }
+    }
+
+    /**
+     * Answers the requests of one connection until the client closes it.
+     * Runs on a virtual thread.
+     *
+     * @param socket The connection.
+     */
+    private void serve(Socket socket) {
+        try (socket;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setTcpNoDelay(true);
+            PathProtocol.writeHello(out, grid.snapshot());
+            out.flush();
+
+            while (true) {
+                int operation = in.read();
+                if (operation < 0) {
+                    return;
+                }
+                int algorithm = in.readUnsignedByte();
+                int first = in.readInt();
+                int second = in.readInt();
+                answer(out, operation, algorithm, first, second);
+                out.flush();
+            }
+        } catch (EOFException | SocketException ex) {
+            // The client went away in the middle of a request.
+        } catch (IOException ex) {
+            System.out.println("ERROR IN connection .... " + ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void answer(DataOutputStream out, int operation, int algorithm, int first, int second)
+            throws IOException, InterruptedException {
+        GridSnapshot snapshot = grid.snapshot();
+        GridSearch.Algorithm[] algorithms = GridSearch.Algorithm.values();
+
+        switch (operation) {
+            case PathProtocol.QUERY:
+                if (algorithm >= algorithms.length || !isCell(snapshot, first) || !isCell(snapshot, second)) {
+                    break;
+                }
+                QueryBatcher.Query query;
+                try {
+                    query = batcher.submit(algorithms[algorithm], first, second).get();
+                } catch (ExecutionException ex) {
+                    break;
+                }
+                SearchResult result = query.getResult();
+                if (result == null) {
+                    break;
+                }
+                if (result.isFound()) {
+                    PathProtocol.writeResponse(out, PathProtocol.FOUND, query.getVersion(),
+                            result.getNrOfExploredNodes(), Waypoints.compress(result.getPath(), snapshot.getColumns()));
+                } else {
+                    PathProtocol.writeResponse(out,
+                            result.isLimitExceeded() ? PathProtocol.LIMIT_EXCEEDED : PathProtocol.NO_PATH,
+                            query.getVersion(),
+                            result.getNrOfExploredNodes(), new int[0]);
+                }
+                return;
+            case PathProtocol.BLOCK:
+            case PathProtocol.UNBLOCK:
+                if (!isCell(snapshot, first)) {
+                    break;
+                }
+                int column = snapshot.column(first);
+                int row = snapshot.row(first);
+                GridSnapshot updated = grid.update(s -> operation == PathProtocol.BLOCK
+                        ? s.withObstacle(column, row) : s.withoutObstacle(column, row));
+                PathProtocol.writeResponse(out, PathProtocol.UPDATED, updated.getVersion(), 0, new int[0]);
+                return;
+            default:
+                break;
+        }
+        PathProtocol.writeResponse(out, PathProtocol.BAD_REQUEST, snapshot.getVersion(), 0, new int[0]);
+    }
+
+    private static boolean isCell(GridSnapshot snapshot, int cell) {
+        return cell >= 0 && cell < snapshot.getCellCount();
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and stops the
+     * batcher.
+     *
+     * @throws IOException If the server socket can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+        batcher.close();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int columns = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        int obstacles = args.length > 3 ? Integer.parseInt(args[3]) : columns * rows / 10;
+
+        SharedGrid grid = new SharedGrid(GridSnapshot.random(columns, rows, obstacles, 0, new Random()));
+        PathServer server = new PathServer(grid, port);
+        System.out.printf("Serving a %dx%d grid with %d obstacles on %s:%d%n", columns, rows, obstacles,
+                InetAddress.getLoopbackAddress().getHostAddress(), server.getPort());
+        server.acceptor.join();
+    }
+}
@@ -10,19 +10,25 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Stack;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
+import javax.swing.JSlider;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 /**
  *
@@ -39,30 +45,58 @@ import javax.swing.JRadioButton;
  * Every time the user chooses to create a new grid, obstacles and
  * starting/ending point, are generated randomly.
  *
+ * The searches themselves are implemented in GridSearch, which reuses a
+ * SearchWorkspace per thread instead of allocating new collections for every
+ * search.
+ *
+ * The grid itself is kept in a SharedGrid. The mouse handlers publish new
+ * snapshots of it, and every search runs against the snapshot that was current
+ * when it started, so the results are reported as stale if the grid was edited
+ * in the meantime.
+ *
  * The nodes are explored in real-time and in the end the path is drawn (the
- * shortest path for BFS and A* since they are both optimal algorithms)
+ * shortest path for BFS and A* since they are both optimal algorithms). The
+ * search runs on a background SearchWorker, which can be slowed down, paused,
+ * stepped, cancelled or run at full speed without any animation.
+ *
+ * Theta* finds any-angle paths; its path is a list of waypoints, and the
+ * cells along the straight lines between them are drawn (see Waypoints). The
+ * number of waypoints of every path is shown next to the number of nodes.
+ *
+ * A search can also be recorded into a trace file (see TraceRecorder) and
+ * replayed later from that file (see TracePlayer) with the same playback
+ * controls, without running the search again.
  *
  * The obstacles can be removed by right-clicking on them, and new obstacles can
  * be generated by clicking and dragging the mouse.
  */
-@SuppressWarnings("unchecked")
 public class Pathfinding extends JPanel implements MouseMotionListener, MouseListener {
 
-    private static ArrayList<Point> obstacles;
-    private static boolean flag = true;
-    private static Point start, goal;
+    private static final int COLUMNS = 30;
+    private static final int ROWS = 30;
+    private static final int OBSTACLES = 200;
+    private static final Random RANDOM = new Random();
+
+    private static SharedGrid grid;
     private static JButton solveBtn, gridWithObstaclesBtn, gridWithoutObstaclesBtn;
     private static int nrOfExploredNodes = 0;
     private static int nrOfNodesInPath = 0;
-    private static LinkedHashMap<Point, Point> path;
-    private static LinkedHashMap<Point, Integer> cost;
-    private static Queue<Point> queue;
-    private static Stack<Point> stack;
-    private static JRadioButton rdBFS, rdDFS, rdAstar, rdGreedy, rdManhattan, rdEuclidean;
+    private static JRadioButton rdBFS, rdDFS, rdAstar, rdGreedy, rdIdaStar, rdFringe, rdThetaStar, rdOffHeapAstar, rdManhattan, rdEuclidean;
     private static JLabel label;
     private static ButtonGroup groupBtnAlgos, groupBtnDist;
-    public JPanel radioBtnAlgoPanel, radioBtnDistPanel, mainPanel, buttonsPanel, nodesExploredPanel;
-    private static PriorityQueue<PriorityQ> frontier;
+    private static JButton pauseBtn, stepBtn, cancelBtn;
+    private static JSlider speedSlider;
+    private static JCheckBox fullSpeedChk, recordChk;
+    private static JButton replayBtn;
+    private static SearchWorker worker;
+    private static TracePlayer player;
+    private static Timer replayTimer;
+    private static double replayCredit;
+    private static GridSnapshot searchedSnapshot;
+    private static boolean[] explored;
+    private static int[] foundPath;
+    private static boolean noPath;
+    public JPanel radioBtnAlgoPanel, radioBtnDistPanel, mainPanel, buttonsPanel, playbackPanel, nodesExploredPanel;
 
     /**
      * The constructor initializes all the required components of the
@@ -70,7 +104,7 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
      */
     public Pathfinding() {
 
-        obstacles = new ArrayList<Point>();
+        grid = new SharedGrid(GridSnapshot.random(COLUMNS, ROWS, OBSTACLES, 0, RANDOM));
         gridWithObstaclesBtn = new JButton("New Grid With Obstacles");
         gridWithoutObstaclesBtn = new JButton("New Grid Without Obstacles");
         solveBtn = new JButton("Find Path");
@@ -81,6 +115,10 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
         rdDFS = new JRadioButton("Depth First Search");
         rdAstar = new JRadioButton("A* Search");
         rdGreedy = new JRadioButton("Greedy Best First Search");
+        rdIdaStar = new JRadioButton("IDA* Search");
+        rdFringe = new JRadioButton("Fringe Search");
+        rdThetaStar = new JRadioButton("Theta* Search (any angle)");
+        rdOffHeapAstar = new JRadioButton("A* Search (off-heap state)");
         rdBFS.setSelected(true);
 
         rdManhattan = new JRadioButton("Manhattan Distance");
@@ -104,6 +142,10 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
         groupBtnAlgos.add(rdDFS);
         groupBtnAlgos.add(rdAstar);
         groupBtnAlgos.add(rdGreedy);
+        groupBtnAlgos.add(rdIdaStar);
+        groupBtnAlgos.add(rdFringe);
+        groupBtnAlgos.add(rdThetaStar);
+        groupBtnAlgos.add(rdOffHeapAstar);
 
         groupBtnDist.add(rdManhattan);
         groupBtnDist.add(rdEuclidean);
@@ -119,6 +161,10 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
         radioBtnAlgoPanel.add(rdDFS);
         radioBtnAlgoPanel.add(rdAstar);
         radioBtnAlgoPanel.add(rdGreedy);
+        radioBtnAlgoPanel.add(rdIdaStar);
+        radioBtnAlgoPanel.add(rdFringe);
+        radioBtnAlgoPanel.add(rdThetaStar);
+        radioBtnAlgoPanel.add(rdOffHeapAstar);
 
         radioBtnDistPanel = new JPanel();
         radioBtnDistPanel.setBorder(BorderFactory.createTitledBorder("Distance Metric"));
@@ -134,9 +180,47 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
         buttonsPanel.add(gridWithoutObstaclesBtn);
         buttonsPanel.add(solveBtn);
 
+        speedSlider = new JSlider(0, 50, 5);
+        speedSlider.setBorder(BorderFactory.createTitledBorder("Delay per node (ms)"));
+        speedSlider.setMajorTickSpacing(10);
+        speedSlider.setPaintTicks(true);
+        speedSlider.setPaintLabels(true);
+        speedSlider.setBackground(Color.gray);
+
+        fullSpeedChk = new JCheckBox("Full speed (no animation)");
+        fullSpeedChk.setBackground(Color.gray);
+
+        recordChk = new JCheckBox("Record trace");
+        recordChk.setBackground(Color.gray);
+        replayBtn = new JButton("Replay Trace...");
+
+        pauseBtn = new JButton("Pause");
+        stepBtn = new JButton("Step");
+        cancelBtn = new JButton("Cancel");
+        cancelBtn.setForeground(Color.red);
+
+        JPanel controlsPanel = new JPanel();
+        controlsPanel.setBackground(Color.gray);
+        controlsPanel.add(pauseBtn);
+        controlsPanel.add(stepBtn);
+        controlsPanel.add(cancelBtn);
+
+        playbackPanel = new JPanel();
+        playbackPanel.setBorder(BorderFactory.createTitledBorder("Playback"));
+        playbackPanel.setLayout(new BoxLayout(playbackPanel, BoxLayout.Y_AXIS));
+        playbackPanel.setBackground(Color.gray);
+        playbackPanel.add(speedSlider);
+        playbackPanel.add(fullSpeedChk);
+        playbackPanel.add(controlsPanel);
+        playbackPanel.add(recordChk);
+        playbackPanel.add(replayBtn);
+
+        setSearchControlsEnabled(false);
+
         mainPanel.add(buttonsPanel);
         mainPanel.add(radioBtnAlgoPanel);
         mainPanel.add(radioBtnDistPanel);
+        mainPanel.add(playbackPanel);
 
         nodesExploredPanel = new JPanel();
         nodesExploredPanel.setLayout(new BorderLayout());
@@ -158,9 +242,7 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
         gridWithObstaclesBtn.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                obstacles.clear();
-                flag = true;
-                repaint();
+                newGrid(OBSTACLES);
 
             }
         });
@@ -168,9 +250,7 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
         gridWithoutObstaclesBtn.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                obstacles.clear();
-                flag = false;
-                repaint();
+                newGrid(0);
 
             }
         });
@@ -178,53 +258,112 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
         solveBtn.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                flag = false;
-                nrOfExploredNodes = 0;
-                nrOfNodesInPath = 0;
+                solve(selectedAlgorithm(), grid.snapshot());
 
-                if (rdBFS.isSelected()) {
-                    try {
-                        bfs();
+            }
+        });
 
-                    } catch (InterruptedException ex) {
-                        System.out.println("ERROR IN solveBtn BFS.... " + e);
+        pauseBtn.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (worker != null) {
+                    worker.setPaused(!worker.isPaused());
+                    pauseBtn.setText(worker.isPaused() ? "Resume" : "Pause");
+                } else if (player != null) {
+                    if (replayTimer.isRunning()) {
+                        replayTimer.stop();
+                    } else {
+                        replayTimer.start();
                     }
-                } else if (rdDFS.isSelected()) {
-                    try {
-
-                        dfs();
+                    pauseBtn.setText(replayTimer.isRunning() ? "Pause" : "Resume");
+                }
+            }
+        });
 
-                    } catch (InterruptedException ex) {
-                        System.out.println("ERROR IN solveBtn DFS.... " + e);
-                    }
-                } else if (rdAstar.isSelected()) {
-                    try {
-                        aStar();
+        stepBtn.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (worker != null) {
+                    worker.step();
+                    pauseBtn.setText("Resume");
+                } else if (player != null) {
+                    replayTimer.stop();
+                    pauseBtn.setText("Resume");
+                    replayStep();
+                }
+            }
+        });
 
-                    } catch (InterruptedException ex) {
-                        System.out.println("ERROR IN solveBtn A*.... " + e);
-                    }
-                } else if (rdGreedy.isSelected()) {
-                    try {
-                        greedy();
+        cancelBtn.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                cancelSearch();
+            }
+        });
 
-                    } catch (InterruptedException ex) {
-                        System.out.println("ERROR IN solveBtn GBFS.... " + e);
-                    }
+        replayBtn.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser chooser = new JFileChooser(Paths.get("").toAbsolutePath().toFile());
+                if (chooser.showOpenDialog(Pathfinding.this) == JFileChooser.APPROVE_OPTION) {
+                    replay(chooser.getSelectedFile().toPath());
                 }
-                label.setText(String.format("<html><font size=5 color=\"Black\"> &#9673; &#9758; Nodes explored:   %d </font><br><font size=5 color=\"Lime\"> &#9673; &#9758; Nodes in path:   %d </font></html>", nrOfExploredNodes, nrOfNodesInPath));
+            }
+        });
 
+        speedSlider.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                if (worker != null) {
+                    worker.setDelay(speedSlider.getValue());
+                }
             }
         });
     }
 
     /**
-     * The overridden paintComponent here calls two methods; generateGrid() and
-     * generateStartGoalPoints(). Those two methods are passed the Graphics
-     * object and draw to it a grid and two points. The starting point (S) and
-     * the goal (G). If the 'flag' global variable is true, then the method
-     * calls the generateObstacles() method as well, otherwise generates a grid
-     * without obstacles.
+     * @return The algorithm of the selected radio button.
+     */
+    private GridSearch.Algorithm selectedAlgorithm() {
+        if (rdDFS.isSelected()) {
+            return GridSearch.Algorithm.DFS;
+        } else if (rdAstar.isSelected()) {
+            return GridSearch.Algorithm.ASTAR;
+        } else if (rdGreedy.isSelected()) {
+            return GridSearch.Algorithm.GREEDY;
+        } else if (rdIdaStar.isSelected()) {
+            return GridSearch.Algorithm.IDA_STAR;
+        } else if (rdFringe.isSelected()) {
+            return GridSearch.Algorithm.FRINGE;
+        } else if (rdThetaStar.isSelected()) {
+            return GridSearch.Algorithm.THETA_STAR;
+        } else if (rdOffHeapAstar.isSelected()) {
+            return GridSearch.Algorithm.OFF_HEAP_ASTAR;
+        }
+        return GridSearch.Algorithm.BFS;
+    }
+
+    /**
+     * Publishes a new, randomly generated grid. The new snapshot gets the next
+     * version, so any search still running against the old grid is reported as
+     * stale.
+     *
+     * @param nrOfObstacles The number of obstacles in the new grid.
+     */
+    public void newGrid(final int nrOfObstacles) {
+        cancelSearch();
+        clearSearch(null);
+        grid.update(s -> GridSnapshot.random(COLUMNS, ROWS, nrOfObstacles, s.getVersion() + 1, RANDOM));
+        repaint();
+    }
+
+    /**
+     * The overridden paintComponent here calls generateGrid(), drawObstacles(),
+     * drawSearch() and drawStartGoalPoints(). Those methods are passed the
+     * Graphics object and draw to it the grid, the obstacles, the nodes
+     * explored so far and the path, and two points. The starting point (S) and
+     * the goal (G). Everything is drawn from snapshots, so repainting never
+     * changes the grid and is safe while a search runs.
      *
      * @param g The Graphics object.
      */
@@ -232,13 +371,17 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        generateGrid(g);
-        generateStartGoalPoints(g);
-
-        if (flag) {
-
-            generateObstacles(g);
+        GridSnapshot snapshot = grid.snapshot();
 
+        generateGrid(g);
+        drawObstacles(g, snapshot);
+        drawSearch(g);
+        drawStartGoalPoints(g, snapshot);
+
+        if (noPath) {
+            g.setColor(Color.white);
+            g.setFont(new Font("Arial", 1, 25));
+            g.drawString("NO PATH AVAILABLE", 180, 300);
         }
     }
 
@@ -252,7 +395,7 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
      */
     public int manhattan(Point p1, Point p2) {
 
-        return Math.abs(p1.x - p2.x) + Math.abs(p1.y - p2.y);
+        return Heuristic.MANHATTAN.estimate(p1.x, p1.y, p2.x, p2.y);
     }
 
     /**
@@ -265,37 +408,7 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
      * the two coordinates of each points
      */
     public int euclidean(Point p1, Point p2) {
-        return (int) Math.sqrt(Math.pow(p1.x - p2.x, 2) + Math.pow(p1.y - p2.y, 2));
-    }
-
-    /**
-     * Method that expands the map/graph by visiting the neighbors of the
-     * current point.
-     *
-     * @param coordinate The current point (x-y coordinates).
-     * @return An array of neighbors (Left,Right,Top,Bottom) of the current
-     * point.
-     */
-    public static Point[] getNeighbors(Point coordinate) {
-        Point neighbors[] = new Point[4];
-
-        int left = ((coordinate.x < 20) ? 20 : coordinate.x - 20);
-        int right = ((coordinate.x > 580) ? 580 : coordinate.x + 20);
-        int top = ((coordinate.y < 20) ? 20 : coordinate.y - 20);
-        int bottom = ((coordinate.y > 580) ? 580 : coordinate.y + 20);
-
-        Point leftCoordinate = new Point(left, coordinate.y);
-        Point rightCoordinate = new Point(right, coordinate.y);
-        Point topCoordinate = new Point(coordinate.x, top);
-        Point bottomCoordinate = new Point(coordinate.x, bottom);
-
-        neighbors[0] = leftCoordinate;
-        neighbors[1] = rightCoordinate;
-        neighbors[2] = topCoordinate;
-        neighbors[3] = bottomCoordinate;
-
-        return neighbors;
-
+        return Heuristic.EUCLIDEAN.estimate(p1.x, p1.y, p2.x, p2.y);
     }
 
     /**
@@ -328,426 +441,315 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
     }
 
     /**
-     * This helper method generates obstacles in the grid, randomly, by calling
-     * another helper method, the generatePoint(). Another helper method is
-     * called, the isPresent(), to check if the generated point is already in
-     * the obstacles list.
+     * This helper method draws the obstacles of the given snapshot.
      *
      * @param g The graphics.
+     * @param snapshot The grid to draw.
      */
-    public void generateObstacles(Graphics g) {
+    public void drawObstacles(Graphics g, GridSnapshot snapshot) {
 
         g.setColor(Color.black);
 
-        while (obstacles.size() < 200) {
-
-            Point point = generatePoint();
-
-            if (!isPresent(point, obstacles)) {
-                obstacles.add(point);
-                g.fillRect(point.x, point.y, 20, 20);
-            }
+        for (Point point : snapshot.obstacles()) {
+            g.fillRect(point.x, point.y, 20, 20);
         }
     }
 
     /**
-     * The randomly generated starting and finishing points in the grid. A while
-     * loop runs until the generated point is not in the obstacles list. If the
-     * start point is not in the list, it is added, the boolean variable flag
-     * becomes true and the loop is terminated. Then another loop is ran while
-     * the boolean flag is false and it terminates if the goal point is found
-     * and the flag becomes true.
+     * Draws the starting (S) and finishing (G) points of the given snapshot.
      *
      * @param g The graphics
+     * @param snapshot The grid to draw.
      */
-    public void generateStartGoalPoints(Graphics g) {
-
-        boolean flag = true;
-
-        while (flag) {
-            start = generatePoint();
-            if (!isPresent(start, obstacles)) {
-                g.setColor(Color.white);
-                g.fillOval(start.x, start.y, 20, 20);
-                g.setColor(Color.black);
-                g.drawOval(start.x, start.y, 20, 20);
-                g.drawString("S", start.x + 7, start.y + 15);
-                obstacles.add(start);
-                flag = false;
-            }
-        }
+    public void drawStartGoalPoints(Graphics g, GridSnapshot snapshot) {
 
-        while (!flag) {
-            goal = generatePoint();
-
-            if (!isPresent(goal, obstacles) && !goal.equals(start)) {
-                g.setColor(Color.black);
-                g.fillOval(goal.x, goal.y, 20, 20);
-                g.setColor(Color.white);
-                g.drawOval(goal.x, goal.y, 20, 20);
-                g.drawString("G", goal.x + 5, goal.y + 15);
-                obstacles.add(goal);
-                flag = true;
-            }
-        }
-    }
-
-    /**
-     * First a random number is generated with Math.random() in the range [0.0,
-     * 1.0) Then this number is multiplied with the difference of the upperbound
-     * with the lowerbound +1. The randomly generated number is subtracted by
-     * the remainder of itself divided by the step +lowerbound .
-     *
-     * @return A random point between lower (0) and upper (600) bounds.
-     */
-    public static Point generatePoint() {
-
-        int randNumber;
-
-        int lowerBound = 0;
-        int upperBound = 600;
-        int step = 20;
-        int x;
-        int y;
+        Point start = snapshot.toPixel(snapshot.getStart());
+        Point goal = snapshot.toPixel(snapshot.getGoal());
 
-        randNumber = (int) (Math.random() * (upperBound - lowerBound + 1));
-        x = randNumber - (randNumber % step + lowerBound);
-
-        randNumber = (int) (Math.random() * (upperBound - lowerBound + 1));
-        y = randNumber - (randNumber % step + lowerBound);
+        g.setColor(Color.white);
+        g.fillOval(start.x, start.y, 20, 20);
+        g.setColor(Color.black);
+        g.drawOval(start.x, start.y, 20, 20);
+        g.drawString("S", start.x + 7, start.y + 15);
 
-        return new Point(x, y);
+        g.setColor(Color.black);
+        g.fillOval(goal.x, goal.y, 20, 20);
+        g.setColor(Color.white);
+        g.drawOval(goal.x, goal.y, 20, 20);
+        g.drawString("G", goal.x + 5, goal.y + 15);
     }
 
     /**
-     * Helper method that determines if the expanded node (point) is already
-     * present in the list. Meaning that the point has already been visited.
+     * A helper method that draws the nodes explored by the current (or last)
+     * search, and its path once it has been found.
      *
-     * @param point The point to check if it is in the list.
-     * @param list The list with the already visited points.
-     * @return True if the point is in the list. False otherwise.
+     * @param g The graphics.
      */
-    public boolean isPresent(Point point, ArrayList<Point> list) {
+    public void drawSearch(Graphics g) {
+
+        if (searchedSnapshot == null) {
+            return;
+        }
 
-        for (int i = 0; i < list.size(); i++) {
-            if (point.equals(list.get(i))) {
-                return true;
+        g.setColor(Color.black);
+        for (int cell = 0; cell < explored.length; cell++) {
+            if (explored[cell]) {
+                Point p = searchedSnapshot.toPixel(cell);
+                g.fillOval(p.x + 2, p.y + 2, 16, 16);
             }
         }
 
-        return false;
+        if (foundPath != null) {
+            g.setColor(Color.green);
+            for (int i = 1; i < foundPath.length - 1; i++) {
+                Point p = searchedSnapshot.toPixel(foundPath[i]);
+                g.fillOval(p.x + 5, p.y + 5, 10, 10);
+            }
+        }
     }
 
     /**
-     * A helper method that draws the nodes explored.
+     * Starts a search against the given snapshot on a background SearchWorker.
+     * Any search that is still running is cancelled first. The worker delivers
+     * the explored nodes in batches to process(), and the result to done(),
+     * both on the Event Dispatch Thread.
      *
-     * @param graphics The graphics object.
-     * @param algoName The algorithms name.
+     * @param algorithm The algorithm to run.
+     * @param snapshot The grid to search.
      */
-    public void drawNodes(Graphics graphics, String algoName) {
+    public void solve(GridSearch.Algorithm algorithm, GridSnapshot snapshot) {
 
-        int size = path.size();
-        graphics.setColor(Color.black);
+        cancelSearch();
+        clearSearch(snapshot);
 
-        for (int i = 0; i < size; i++) {
-            Point p = (Point) path.keySet().toArray()[i];
-            if (algoName.equals("BFS")) {
-                if (queue.isEmpty() && !p.equals(goal)) {
-                    graphics.setColor(Color.white);
-                    graphics.setFont(new Font("Arial", 1, 25));
-                    graphics.drawString("NO PATH AVAILABLE", 180, 300);
+        Heuristic heuristic = rdManhattan.isSelected() ? Heuristic.MANHATTAN : Heuristic.EUCLIDEAN;
 
-                    break;
-                }
-            } else if (algoName.equals("DFS")) {
-                if (stack.isEmpty() && !p.equals(goal)) {
-                    graphics.setColor(Color.white);
-                    graphics.setFont(new Font("Arial", 1, 25));
-                    graphics.drawString("NO PATH AVAILABLE", 180, 300);
-
-                    break;
+        worker = new SearchWorker(algorithm, snapshot, heuristic, speedSlider.getValue(), fullSpeedChk.isSelected()) {
+            @Override
+            protected void process(List<long[]> batches) {
+                if (worker != this) {
+                    return;
                 }
-            } else if (algoName.equals("A*")) {
-                if (frontier.isEmpty() && !p.equals(goal)) {
-                    graphics.setColor(Color.white);
-                    graphics.setFont(new Font("Arial", 1, 25));
-                    graphics.drawString("NO PATH AVAILABLE", 180, 300);
-
-                    break;
+                int start = getSnapshot().getStart();
+                int goal = getSnapshot().getGoal();
+                for (long[] batch : batches) {
+                    for (long event : batch) {
+                        int cell = SearchWorker.cell(event);
+                        if (SearchWorker.type(event) == SearchWorker.PUSHED && cell != start && cell != goal) {
+                            explored[cell] = true;
+                        }
+                    }
                 }
-            } else if (algoName.equals("GBFS")) {
-                if (frontier.isEmpty() && !p.equals(goal)) {
-                    graphics.setColor(Color.white);
-                    graphics.setFont(new Font("Arial", 1, 25));
-                    graphics.drawString("NO PATH AVAILABLE", 180, 300);
+                repaint();
+            }
 
-                    break;
+            @Override
+            protected void done() {
+                if (worker == this) {
+                    finished(this);
                 }
             }
+        };
 
-            if (!p.equals(start) && !p.equals(goal)) {
-
-                int x = p.x - (p.x % 20) + 2;
-                int y = p.y - (p.y % 20) + 2;
-
-                graphics.fillOval(x, y, 16, 16);
-
-            }
+        if (recordChk.isSelected()) {
+            worker.record(Paths.get("search-" + System.currentTimeMillis() + ".trace"));
         }
+
+        label.setText(String.format("<html><font size=5 color=\"Black\"> &#9673; &#9758; Running %s... </font></html>", algorithm));
+        pauseBtn.setText("Pause");
+        setSearchControlsEnabled(true);
+        worker.execute();
     }
 
     /**
-     * The Breadth-First Search algorithm. A Queue Data Structure (FIFO) is used
-     * for the implementation. When the algorithm finishes, the method calls the
-     * drawNodes() method to draw the points.
+     * Shows the result of a finished search: the path (or "NO PATH
+     * AVAILABLE") and the counters of the label. If the grid was edited while
+     * the search ran, the label says so.
      *
-     * @throws InterruptedException
+     * @param finishedWorker The worker that finished.
      */
-    public void bfs() throws InterruptedException {
+    private void finished(SearchWorker finishedWorker) {
 
-        path = new LinkedHashMap<>();
-        queue = new LinkedList<>();
-        Graphics g = this.getGraphics();
-        queue.offer(start);
-        path.put(start, null);
+        worker = null;
+        setSearchControlsEnabled(false);
 
-        obstacles.remove(start);
-        obstacles.remove(goal);
-        while (!queue.isEmpty()) {
-            Point current = queue.poll();
-
-            for (Point neighbor : getNeighbors((current))) {
-
-                if (neighbor.equals(goal)) {
-                    path.put(neighbor, current);
-                    path.put(null, neighbor);
+        if (finishedWorker.isCancelled()) {
+            String trace = finishedWorker.getTraceFile() == null ? "" : "<br><font size=4 color=\"Black\"> Trace discarded </font>";
+            label.setText(String.format("<html><font size=5 color=\"Black\"> &#9673; &#9758; Search cancelled </font>%s</html>", trace));
+            return;
+        }
 
-                    Point value = path.get((Point) path.values().toArray()[path.size() - 1]);
+        SearchResult result;
+        try {
+            result = finishedWorker.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            System.out.println("ERROR IN solveBtn " + finishedWorker.getAlgorithm() + ".... " + ex);
+            label.setText("<html><font size=5 color=\"Red\"> &#9673; &#9758; Search failed </font></html>");
+            return;
+        }
 
-                    g.setColor(Color.green);
-                    while (!value.equals(start)) {
-                        nrOfNodesInPath++;
-                        int x = value.x - (value.x % 20) + 5;
-                        int y = value.y - (value.y % 20) + 5;
-                        g.fillOval(x, y, 10, 10);
-                        value = path.get(value);
+        nrOfExploredNodes = result.getNrOfExploredNodes();
+        foundPath = result.isFound() ? Waypoints.expand(result.getPath(), COLUMNS) : null;
+        nrOfNodesInPath = foundPath == null ? 0 : Math.max(0, foundPath.length - 2);
+        int nrOfWaypoints = Waypoints.compress(result.getPath(), COLUMNS).length;
+        noPath = !result.isFound() && !result.isLimitExceeded();
+
+        String limit = result.isLimitExceeded() ? "<br><font size=4 color=\"Red\"> Node limit reached, no path known </font>" : "";
+        String stale = grid.isStale(finishedWorker.getSnapshot()) ? "<br><font size=4 color=\"Red\"> Grid edited during the search </font>" : "";
+        String trace = finishedWorker.getTraceFile() == null ? "" : String.format("<br><font size=4 color=\"Black\"> Trace:   %s (%d events) </font>", finishedWorker.getTraceFile().getFileName(), finishedWorker.getNrOfTracedEvents());
+        label.setText(String.format("<html><font size=5 color=\"Black\"> &#9673; &#9758; Nodes explored:   %d </font><br><font size=5 color=\"Lime\"> &#9673; &#9758; Nodes in path:   %d </font><br><font size=4 color=\"Black\"> Waypoints:   %d </font><br><font size=4 color=\"Black\"> Search memory:   %.1f KB </font>%s%s</html>", nrOfExploredNodes, nrOfNodesInPath, nrOfWaypoints, result.getMemoryBytes() / 1024.0, limit + trace, stale));
+        repaint();
+    }
 
-                    }
-                    Thread.sleep(10); // THIS SLEEP HERE IS ADDED BECAUSE THE METHOD RETURNS BEFORE THE PATH IS BEING DRAWN (PROBABLY A SWING BUG)
-                    return;
-                }
-                if (!path.containsKey(neighbor) && !obstacles.contains(neighbor) && neighbor.y < 600 && neighbor.x < 600) {
-                    nrOfExploredNodes++;
-                    queue.offer(neighbor);
-                    path.put(neighbor, current);
-                }
-            }
-            drawNodes(g, "BFS");
+    /**
+     * Cancels the running search or replay, if there is one.
+     */
+    public void cancelSearch() {
+        if (worker != null) {
+            worker.cancel(true);
+        }
+        if (player != null) {
+            stopReplay("<html><font size=5 color=\"Black\"> &#9673; &#9758; Replay cancelled </font></html>");
         }
     }
 
     /**
-     * The Depth-First Search algorithm. A Stack Data Structure (LIFO) is used
-     * for the implementation. When the algorithm finishes, the method calls the
-     * drawNodes() method to draw the points.
+     * Replays a trace file. The grid of the trace is published as the current
+     * grid, and the recorded events are applied on the Event Dispatch Thread by
+     * a Swing Timer, once per frame, at the speed chosen with the slider. In
+     * full speed mode the whole trace is applied at once.
      *
-     * @throws InterruptedException
+     * @param file The trace file.
      */
-    public void dfs() throws InterruptedException {
+    public void replay(Path file) {
 
-        path = new LinkedHashMap<>();
-        stack = new Stack();
-        Graphics g = this.getGraphics();
-        stack.push(start);
-        path.put(start, null);
+        cancelSearch();
 
-        obstacles.remove(start);
-        obstacles.remove(goal);
-
-        while (!stack.isEmpty()) {
-            Point current = stack.pop();
-
-            for (Point neighbor : getNeighbors((current))) {
-
-                if (neighbor.equals(goal)) {
-                    path.put(neighbor, current);
-                    path.put(null, neighbor);
-
-                    Point value = path.get((Point) path.values().toArray()[path.size() - 1]);
-
-                    g.setColor(Color.green);
-                    while (!value.equals(start)) {
-
-                        nrOfNodesInPath++;
-                        int x = value.x - (value.x % 20) + 5;
-                        int y = value.y - (value.y % 20) + 5;
-                        g.fillOval(x, y, 10, 10);
-                        value = path.get(value);
+        TracePlayer opened;
+        try {
+            opened = TracePlayer.open(file);
+        } catch (IOException ex) {
+            System.out.println("ERROR IN replayBtn .... " + ex);
+            label.setText("<html><font size=5 color=\"Red\"> &#9673; &#9758; Not a trace file </font></html>");
+            return;
+        }
+        if (opened.getColumns() != COLUMNS || opened.getRows() != ROWS) {
+            closeQuietly(opened);
+            label.setText(String.format("<html><font size=5 color=\"Red\"> &#9673; &#9758; The trace is %dx%d, not %dx%d </font></html>", opened.getColumns(), opened.getRows(), COLUMNS, ROWS));
+            return;
+        }
 
-                    }
-                    Thread.sleep(10); // THIS SLEEP HERE IS ADDED BECAUSE THE METHOD RETURNS BEFORE THE PATH IS BEING PAINTED (PROBABLY A SWING BUG)
-                    return;
+        GridSnapshot snapshot = grid.update(s -> opened.toSnapshot(s.getVersion() + 1));
+        player = opened;
+        clearSearch(snapshot);
 
+        replayCredit = 0;
+        replayTimer = new Timer(1000 / 60, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int delay = speedSlider.getValue();
+                if (fullSpeedChk.isSelected() || delay == 0) {
+                    replayCredit = Double.POSITIVE_INFINITY;
+                } else {
+                    replayCredit += (1000.0 / 60) / delay;
                 }
-
-                if (!path.containsKey(neighbor) && !obstacles.contains(neighbor) && neighbor.y < 600 && neighbor.x < 600) {
-
-                    nrOfExploredNodes++;
-                    stack.push(neighbor);
-                    path.put(neighbor, current);
-
+                while (replayCredit >= 1 && player != null) {
+                    replayCredit--;
+                    replayStep();
                 }
-
             }
+        });
 
-            drawNodes(g, "DFS");
-        }
-
+        label.setText(String.format("<html><font size=5 color=\"Black\"> &#9673; &#9758; Replaying %s... </font></html>", player.getLabel()));
+        pauseBtn.setText("Pause");
+        setSearchControlsEnabled(true);
+        replayTimer.start();
     }
 
     /**
-     * The A* Search algorithm. Implemented with a Priority Queue which gives
-     * also a priority to each visited node. The node with the highest priority
-     * is visited, not the first in the queue, nor the last in the queue. The
-     * formula for the calculation of the priority (cost) is f(n) = g(n) + h(n)
-     * where g(n) is the cost of the path from the start node to n, and h(n) is
-     * the heuristic that estimates the cost from n to the goal node. When the
-     * algorithm finishes, the method calls the drawNodes() method to draw the
-     * points.
-     *
-     * @throws InterruptedException
+     * Replays the events of the trace up to and including the next expanded
+     * node, the same amount of work the search does between two delays.
      */
-    public void aStar() throws InterruptedException {
-
-        obstacles.remove(start);
-        obstacles.remove(goal);
-
-        frontier = new PriorityQueue<>();
-        Graphics g = this.getGraphics();
-        frontier.add(new PriorityQ(start, 0));
-        path = new LinkedHashMap<>();
-        cost = new LinkedHashMap<>();
-
-        path.put(start, null);
-        cost.put(start, 0);
-
-        while (!frontier.isEmpty()) {
-
-            Point current = frontier.poll().point;
-
-            if (current.equals(goal)) {
-
-                path.put(null, current);
-                Point value = path.get((Point) path.values().toArray()[path.size() - 1]);
-
-                g.setColor(Color.green);
-
-                while (!value.equals(start)) {
-
-                    int x = value.x - (value.x % 20) + 5;
-                    int y = value.y - (value.y % 20) + 5;
-                    g.fillOval(x, y, 10, 10);
-                    value = path.get(value);
-                    nrOfNodesInPath++;
-
+    private void replayStep() {
+        final boolean[] expanded = new boolean[1];
+        SearchListener listener = new SearchListener() {
+            @Override
+            public void pushed(int cell) {
+                nrOfExploredNodes++;
+                if (cell != searchedSnapshot.getStart() && cell != searchedSnapshot.getGoal()) {
+                    explored[cell] = true;
                 }
-                Thread.sleep(10); // THIS SLEEP HERE IS ADDED BECAUSE SOMETIMES THE METHOD RETURNS BEFORE THE PATH IS PAINTED. (PROBABLY A SWING BUG...)
-                return;
-
             }
 
-            for (Point neighbor : getNeighbors((current))) {
-
-                int newCost;
-                if (rdManhattan.isSelected()) {
-                    newCost = manhattan(neighbor, goal) + cost.get(current);
-                } else {
-                    newCost = euclidean(neighbor, goal) + cost.get(current);
-                }
-                if ((!cost.containsKey(neighbor) || newCost < cost.get(neighbor)) && !obstacles.contains(neighbor) && neighbor.y < 600 && neighbor.x < 600) {
-
-                    cost.put(neighbor, newCost);
+            @Override
+            public void expanded(int cell) {
+                expanded[0] = true;
+            }
 
-                    frontier.add(new PriorityQ(neighbor, newCost));
-                    path.put(neighbor, current);
-                    nrOfExploredNodes++;
+            @Override
+            public void pathFound(int[] path) {
+                foundPath = Waypoints.expand(path, COLUMNS);
+                nrOfNodesInPath = Math.max(0, foundPath.length - 2);
+            }
+        };
 
+        try {
+            while (!expanded[0]) {
+                if (player.next(listener) == TraceRecorder.END) {
+                    noPath = foundPath == null;
+                    stopReplay(String.format("<html><font size=5 color=\"Black\"> &#9673; &#9758; Nodes explored:   %d </font><br><font size=5 color=\"Lime\"> &#9673; &#9758; Nodes in path:   %d </font><br><font size=4 color=\"Black\"> Replayed %s </font></html>", nrOfExploredNodes, nrOfNodesInPath, player.getLabel()));
+                    break;
                 }
             }
-
-            drawNodes(g, "A*");
+        } catch (IOException ex) {
+            System.out.println("ERROR IN replayBtn .... " + ex);
+            stopReplay("<html><font size=5 color=\"Red\"> &#9673; &#9758; Corrupt trace file </font></html>");
         }
+        repaint();
     }
 
     /**
-     * The Greedy Best-First Search algorithm. Implemented with a Priority Queue
-     * which gives also a priority to each visited node. The node with the
-     * highest priority is visited, not the first in the queue, nor the last in
-     * the queue. The formula for the calculation of the priority (cost) is,
-     * f(n) = h(n), where h(n) is the smallest estimation from n to the goal.
-     * When the algorithm finishes, the method calls the drawNodes() method to
-     * draw the points.
+     * Stops the replay and closes its trace file.
      *
-     * @throws InterruptedException
+     * @param text The new text of the label.
      */
-    public void greedy() throws InterruptedException {
-
-        obstacles.remove(start);
-        obstacles.remove(goal);
-
-        frontier = new PriorityQueue<>();
-        Graphics g = this.getGraphics();
-        frontier.add(new PriorityQ(start, 0));
-        path = new LinkedHashMap<>();
-        cost = new LinkedHashMap<>();
-
-        path.put(start, null);
-        cost.put(start, 0);
-
-        while (!frontier.isEmpty()) {
-            Point current = frontier.poll().point;
-
-            if (current.equals(goal)) {
-                path.put(null, current);
-                Point value = path.get((Point) path.values().toArray()[path.size() - 1]);
-
-                g.setColor(Color.green);
-                while (!value.equals(start)) {
-                    nrOfNodesInPath++;
-
-                    int x = value.x - (value.x % 20) + 5;
-                    int y = value.y - (value.y % 20) + 5;
-                    g.fillOval(x, y, 10, 10);
-                    value = path.get(value);
-
-                }
-                Thread.sleep(10); // THIS SLEEP HERE IS ADDED BECAUSE THE METHOD RETURNS BEFORE THE PATH IS BEING PAINTED. (PROBABLY A SWING BUG...)
-                return;
-
-            }
-
-            for (Point neighbor : getNeighbors((current))) {
-
-                int newCost;
-                if (rdManhattan.isSelected()) {
-                    newCost = manhattan(neighbor, goal);
-                } else {
-                    newCost = euclidean(neighbor, goal);
-                }
-                if ((!cost.containsKey(neighbor) || newCost < cost.get(neighbor)) && !obstacles.contains(neighbor) && neighbor.y < 600 && neighbor.x < 600) {
-
-                    cost.put(neighbor, newCost);
-                    nrOfExploredNodes++;
-                    frontier.add(new PriorityQ(neighbor, newCost));
-                    path.put(neighbor, current);
-
-                }
-
-            }
+    private void stopReplay(String text) {
+        if (replayTimer != null) {
+            replayTimer.stop();
+        }
+        closeQuietly(player);
+        player = null;
+        setSearchControlsEnabled(false);
+        label.setText(text);
+    }
 
-            drawNodes(g, "GBFS");
+    private static void closeQuietly(TracePlayer tracePlayer) {
+        try {
+            tracePlayer.close();
+        } catch (IOException ex) {
+            System.out.println("ERROR IN replayBtn .... " + ex);
         }
+    }
 
+    /**
+     * Forgets the nodes and the path of the last search.
+     *
+     * @param snapshot The grid the next search runs against, or null.
+     */
+    private void clearSearch(GridSnapshot snapshot) {
+        searchedSnapshot = snapshot;
+        explored = snapshot == null ? null : new boolean[snapshot.getCellCount()];
+        foundPath = null;
+        noPath = false;
+        nrOfExploredNodes = 0;
+        nrOfNodesInPath = 0;
+        repaint();
+    }
+
+    private void setSearchControlsEnabled(boolean running) {
+        pauseBtn.setEnabled(running);
+        stepBtn.setEnabled(running);
+        cancelBtn.setEnabled(running);
     }
 
     /**
@@ -761,20 +763,19 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
     @Override
     public void mouseDragged(MouseEvent e) {
 
-        Graphics g = this.getGraphics();
-        g.setColor(Color.black);
-
 //      ASSIGNING TO x AND y MULTIPLES OF 20 -> 20,40,60,320,480,520,,,,,
         int x = (e.getX() - (e.getX() % 20)); // x - (x % 20) | --> GIVES A MULTIPLE OF 20
         int y = (e.getY() - (e.getY() % 20)); // y - (y % 20) |
 
-        Point point = new Point(x, y);
+        final int column = x / GridSnapshot.CELL_SIZE;
+        final int row = y / GridSnapshot.CELL_SIZE;
 
-        g.fillRect(x, y, 20, 20);
+        GridSnapshot before = grid.snapshot();
+        GridSnapshot after = grid.update(s -> s.withObstacle(column, row));
 
-        if (!obstacles.contains(point)) {
+        if (after != before) {
 
-            obstacles.add(point);
+            repaint(x, y, 21, 21);
 
         }
 
@@ -786,8 +787,8 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
 
     /**
      * Whenever an obstacle is right-clicked, the obstacle is removed from the
-     * graph and from the list. This overridden method makes use of the
-     * getGraphics() method of the object in order to be able to draw on it.
+     * graph and a new snapshot of the grid is published. Only the cell that
+     * changed is repainted.
      *
      * @param e
      */
@@ -799,15 +800,12 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
             int x = (e.getX() - (e.getX() % 20)); // x - (x % 20) --> GIVES A MULTIPLE OF 20
             int y = (e.getY() - (e.getY() % 20)); // y - (y % 20)
 
-            Point p = new Point(x, y);
+            final int column = x / GridSnapshot.CELL_SIZE;
+            final int row = y / GridSnapshot.CELL_SIZE;
 
-            obstacles.remove(p);
+            grid.update(s -> s.withoutObstacle(column, row));
 
-            Graphics gr = this.getGraphics();
-            gr.setColor(Color.gray);
-            gr.fillRect(x, y, 20, 20);
-            gr.setColor(Color.black);
-            gr.drawRect(x, y, 20, 20);
+            repaint(x, y, 21, 21);
 
         }
     }
@@ -827,31 +825,4 @@ public class Pathfinding extends JPanel implements MouseMotionListener, MouseLis
     @Override
     public void mouseExited(MouseEvent e) {
     }
-
-    /**
-     * This private class is the implementation of a Priority Queue ADT. It
-     * returns 1 if the cost of the first point is greater than the cost of the
-     * second. -1 if the cost is smaller, or 0 if they are equal.
-     *
-     */
-    private class PriorityQ implements Comparable<PriorityQ> {
-
-        Point point;
-        int cost;
-
-        public PriorityQ(Point point, int cost) {
-            this.point = point;
-            this.cost = cost;
-        }
-
-        @Override
-        public int compareTo(PriorityQ point) {
-            if (cost < point.cost) {
-                return -1;
-            } else if (cost > point.cost) {
-                return 1;
-            }
-            return 0;
-        }
-    }
 }
@@ -0,0 +1,243 @@
+package pathfinding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * Collects the path queries that arrive concurrently into micro-batches and
+ * solves each batch in parallel against one snapshot of the shared grid.
+ *
+ * A single batching thread takes the first waiting query, then everything that
+ * arrives within maxDelay (up to maxBatch queries), and solves them with a
+ * parallel stream. The queries that arrive while a batch is solved form the
+ * next batch, so the batches grow with the load by themselves. Every query of
+ * a batch sees the same version of the grid, and each worker thread of the
+ * stream reuses its own SearchWorkspace.
+ *
+ * Each query completes as soon as it is solved, not when its whole batch is,
+ * and it may explore (push) at most maxExploredNodes nodes, the same count its
+ * result reports; past that it stops with a "limit exceeded" result. So a slow query (an IDA* to a far or unreachable
+ * goal) neither delays the answers of the fast ones nor holds the batcher for
+ * long.
+ */
+public final class QueryBatcher implements AutoCloseable {
+
+    /**
+     * A query and, once it is solved, its result.
+     */
+    public static final class Query {
+
+        private final GridSearch.Algorithm algorithm;
+        private final int start;
+        private final int goal;
+        private final CompletableFuture<Query> done = new CompletableFuture<>();
+        private SearchResult result;
+        private long version;
+        private int pushed;
+
+        private Query(GridSearch.Algorithm algorithm, int start, int goal) {
+            this.algorithm = algorithm;
+            this.start = start;
+            this.goal = goal;
+        }
+
+        /**
+         * @return The result; null if the query could not be solved.
+         */
+        public SearchResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return The version of the grid the query was solved against.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        private void solve(GridSnapshot snapshot, final int maxExploredNodes) {
+            version = snapshot.getVersion();
+            if (snapshot.isBlocked(start) || snapshot.isBlocked(goal)) {
+                result = SearchResult.notFound(0, 0);
+                return;
+            }
+            if (algorithm == GridSearch.Algorithm.IDA_STAR) {
+                // IDA* has a node limit of its own, which also reports its memory.
+                result = MemoryBoundedSearch.idaStar(snapshot, start, goal, Heuristic.MANHATTAN, SearchListener.NONE,
+                        MemoryBoundedSearch.TRANSPOSITION_ENTRIES, maxExploredNodes);
+                return;
+            }
+            // Counts the pushed nodes and stops the search when the budget is spent.
+            SearchListener budget = new SearchListener() {
+                @Override
+                public void pushed(int cell) {
+                    if (++pushed > maxExploredNodes) {
+                        throw new LimitExceededException();
+                    }
+                }
+            };
+            SearchWorkspace workspace = SearchWorkspace.forThread(snapshot.getCellCount());
+            pushed = 0;
+            try {
+                result = GridSearch.search(algorithm, snapshot, start, goal, Heuristic.MANHATTAN, workspace, budget);
+            } catch (LimitExceededException ex) {
+                result = SearchResult.limitExceeded(pushed, workspace.getMemoryBytes());
+            } catch (RuntimeException ex) {
+                System.out.println("ERROR IN " + algorithm + " query .... " + ex);
+            }
+        }
+    }
+
+    /**
+     * Thrown by the budget listener to stop a query. It has no stack trace,
+     * since it is expected and only caught a few frames up.
+     */
+    private static final class LimitExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        LimitExceededException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Query STOP = new Query(GridSearch.Algorithm.BFS, 0, 0);
+
+    private final SharedGrid grid;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final int maxExploredNodes;
+    private final BlockingQueue<Query> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final AtomicLong nrOfBatches = new AtomicLong();
+    private final AtomicLong nrOfQueries = new AtomicLong();
+
+    /**
+     * Starts the batching thread.
+     *
+     * @param grid The grid the queries are solved against.
+     * @param maxBatch The largest number of queries in a batch.
+     * @param maxDelayNanos How long, at most, a batch waits for more queries
+     * after its first one arrived.
+     * @param maxExploredNodes The largest number of nodes a query may expand.
+     */
+    public QueryBatcher(SharedGrid grid, int maxBatch, long maxDelayNanos, int maxExploredNodes) {
+        this.grid = grid;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = maxDelayNanos;
+        this.maxExploredNodes = maxExploredNodes;
+        this.thread = new Thread(this::run, "path-batcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a query. The start and the goal must be cells of the grid.
+     *
+     * @param algorithm The algorithm to run.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @return Completes with the solved query.
+     */
+    public CompletableFuture<Query> submit(GridSearch.Algorithm algorithm, int start, int goal) {
+        Query query = new Query(algorithm, start, goal);
+        queue.add(query);
+        return query.done;
+    }
+
+    public long getNrOfBatches() {
+        return nrOfBatches.get();
+    }
+
+    public long getNrOfQueries() {
+        return nrOfQueries.get();
+    }
+
+    /**
+     * @return The average number of queries per batch.
+     */
+    public double getAverageBatchSize() {
+        long batches = nrOfBatches.get();
+        return batches == 0 ? 0 : (double) nrOfQueries.get() / batches;
+    }
+
+    private void run() {
+        List<Query> batch = new ArrayList<>(maxBatch);
+        try {
+            while (true) {
+                Query first = queue.take();
+                if (first == STOP) {
+                    return;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() == maxBatch || remaining <= 0) {
+                        break;
+                    }
+                    Query next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                boolean stop = batch.remove(STOP);
+                solve(batch);
+                batch.clear();
+                if (stop) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Query query : batch) {
+                query.done.complete(query);
+            }
+            for (Query query : queue) {
+                query.done.complete(query);
+            }
+        }
+    }
+
+    private void solve(List<Query> batch) {
+        GridSnapshot snapshot = grid.snapshot();
+        if (batch.size() == 1) {
+            solve(batch.get(0), snapshot);
+        } else {
+            batch.parallelStream().forEach(query -> solve(query, snapshot));
+        }
+        nrOfBatches.incrementAndGet();
+        nrOfQueries.addAndGet(batch.size());
+    }
+
+    private void solve(Query query, GridSnapshot snapshot) {
+        query.solve(snapshot, maxExploredNodes);
+        query.done.complete(query);
+    }
+
+    /**
+     * Solves the queries that are already queued and stops the batching
+     * thread.
+     */
+    @Override
+    public void close() {
+        queue.add(STOP);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
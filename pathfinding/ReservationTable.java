@@ -0,0 +1,197 @@
+package pathfinding;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * A space-time reservation table for cooperative pathfinding: which agent
+ * occupies a cell at a timestep. The (cell, timestep) pairs are packed into a
+ * long and kept in an open-addressing hash table with linear probing, so a
+ * reservation is a few array accesses and no objects are allocated.
+ *
+ * Like SearchWorkspace, the table stamps each slot with the generation in which
+ * it was written, so clearing the table for the next planning window only
+ * increments the generation.
+ */
+public final class ReservationTable {
+
+    public static final int FREE = -1;
+
+    private long[] keys;
+    private int[] agents;
+    private int[] stamps;
+    private int generation = 1;
+    private int size;
+
+    /**
+     * @param expectedReservations The number of reservations the table should
+     * hold before it grows.
+     */
+    public ReservationTable(int expectedReservations) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedReservations * 2 - 1)) << 1;
+        keys = new long[capacity];
+        agents = new int[capacity];
+        stamps = new int[capacity];
+    }
+
+    /**
+     * Removes every reservation.
+     */
+    public void clear() {
+        size = 0;
+        if (++generation == 0) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * @return The number of reservations.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of slots of the hash table.
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * @param cell The cell.
+     * @param time The timestep.
+     * @return The agent that reserved the cell at that time, or FREE.
+     */
+    public int getAgent(int cell, int time) {
+        long key = key(cell, time);
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; stamps[slot] == generation; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return agents[slot];
+            }
+        }
+        return FREE;
+    }
+
+    /**
+     * @param cell The cell.
+     * @param time The timestep.
+     * @param agent The agent that asks.
+     * @return True if the cell is free at that time, or reserved by the agent
+     * itself.
+     */
+    public boolean isFree(int cell, int time, int agent) {
+        int owner = getAgent(cell, time);
+        return owner == FREE || owner == agent;
+    }
+
+    /**
+     * Reserves a cell at a timestep for an agent.
+     *
+     * @param cell The cell.
+     * @param time The timestep.
+     * @param agent The agent.
+     * @return False if the cell was already reserved by another agent at that
+     * time; the reservation is then left unchanged.
+     */
+    public boolean reserve(int cell, int time, int agent) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        long key = key(cell, time);
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (stamps[slot] == generation) {
+            if (keys[slot] == key) {
+                return agents[slot] == agent;
+            }
+            slot = (slot + 1) & mask;
+        }
+        stamps[slot] = generation;
+        keys[slot] = key;
+        agents[slot] = agent;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the reservation of a cell at a timestep, if the agent holds it.
+     * The slots after it are shifted back (the deletion of linear probing), so
+     * no tombstones are left behind.
+     *
+     * @param cell The cell.
+     * @param time The timestep.
+     * @param agent The agent.
+     * @return True if the reservation was removed.
+     */
+    public boolean release(int cell, int time, int agent) {
+        long key = key(cell, time);
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (stamps[slot] == generation && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (stamps[slot] != generation || agents[slot] != agent) {
+            return false;
+        }
+
+        int empty = slot;
+        for (int next = (slot + 1) & mask; stamps[next] == generation; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            // The entry can move back unless its home lies cyclically in (empty, next].
+            boolean between = empty <= next ? empty < home && home <= next : empty < home || home <= next;
+            if (!between) {
+                keys[empty] = keys[next];
+                agents[empty] = agents[next];
+                empty = next;
+            }
+        }
+        stamps[empty] = 0;
+        size--;
+        return true;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldAgents = agents;
+        int[] oldStamps = stamps;
+        int oldGeneration = generation;
+
+        keys = new long[oldKeys.length * 2];
+        agents = new int[oldKeys.length * 2];
+        stamps = new int[oldKeys.length * 2];
+        generation = 1;
+
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStamps[i] == oldGeneration) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (stamps[slot] == generation) {
+                    slot = (slot + 1) & mask;
+                }
+                stamps[slot] = generation;
+                keys[slot] = oldKeys[i];
+                agents[slot] = oldAgents[i];
+            }
+        }
+    }
+
+    private static long key(int cell, int time) {
+        return ((long) time << 32) | (cell & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Mixes the bits of a key (the finalizer of MurmurHash3), so consecutive
+     * cells and timesteps spread over the whole table.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,79 @@
+package pathfinding;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * Receives the exploration events of a search, in the order they happen. All
+ * the methods do nothing by default, so a listener only overrides the events
+ * it is interested in.
+ */
+public interface SearchListener {
+
+    /**
+     * A listener that ignores every event, for searches that run at full
+     * speed.
+     */
+    SearchListener NONE = new SearchListener() {
+    };
+
+    /**
+     * Returns a listener that passes every event to two listeners, first to
+     * one and then to the other.
+     *
+     * @param first The first listener.
+     * @param second The second listener.
+     * @return The combined listener.
+     */
+    static SearchListener both(final SearchListener first, final SearchListener second) {
+        if (first == NONE) {
+            return second;
+        }
+        if (second == NONE) {
+            return first;
+        }
+        return new SearchListener() {
+            @Override
+            public void pushed(int cell) {
+                first.pushed(cell);
+                second.pushed(cell);
+            }
+
+            @Override
+            public void expanded(int cell) {
+                first.expanded(cell);
+                second.expanded(cell);
+            }
+
+            @Override
+            public void pathFound(int[] path) {
+                first.pathFound(path);
+                second.pathFound(path);
+            }
+        };
+    }
+
+    /**
+     * A cell was discovered and added to the frontier.
+     *
+     * @param cell The index of the cell.
+     */
+    default void pushed(int cell) {
+    }
+
+    /**
+     * A cell was taken from the frontier and its neighbors are being visited.
+     *
+     * @param cell The index of the cell.
+     */
+    default void expanded(int cell) {
+    }
+
+    /**
+     * The goal was reached.
+     *
+     * @param path The cells of the path, from start to goal.
+     */
+    default void pathFound(int[] path) {
+    }
+}
@@ -0,0 +1,88 @@
+package pathfinding;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * The outcome of one search: the path that was found, if any, the number of
+ * nodes that were explored to find it and an estimate of the memory the search
+ * state needed.
+ */
+public final class SearchResult {
+
+    private static final int[] NO_PATH = new int[0];
+
+    private final int[] path;
+    private final int nrOfExploredNodes;
+    private final long memoryBytes;
+    private final boolean limitExceeded;
+
+    public SearchResult(int[] path, int nrOfExploredNodes, long memoryBytes) {
+        this(path, nrOfExploredNodes, memoryBytes, false);
+    }
+
+    private SearchResult(int[] path, int nrOfExploredNodes, long memoryBytes, boolean limitExceeded) {
+        this.path = path == null ? NO_PATH : path;
+        this.nrOfExploredNodes = nrOfExploredNodes;
+        this.memoryBytes = memoryBytes;
+        this.limitExceeded = limitExceeded;
+    }
+
+    public static SearchResult notFound(int nrOfExploredNodes, long memoryBytes) {
+        return new SearchResult(NO_PATH, nrOfExploredNodes, memoryBytes, false);
+    }
+
+    /**
+     * The search gave up after exploring as many nodes as it was allowed to;
+     * there may or may not be a path.
+     */
+    public static SearchResult limitExceeded(int nrOfExploredNodes, long memoryBytes) {
+        return new SearchResult(NO_PATH, nrOfExploredNodes, memoryBytes, true);
+    }
+
+    public boolean isFound() {
+        return path.length > 0;
+    }
+
+    /**
+     * @return True if the search stopped at its node limit, without knowing
+     * whether there is a path.
+     */
+    public boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    /**
+     * @return The cells of the path, from start to goal, or an empty array if
+     * no path was found. The array must not be modified.
+     */
+    public int[] getPath() {
+        return path;
+    }
+
+    public int getNrOfExploredNodes() {
+        return nrOfExploredNodes;
+    }
+
+    /**
+     * The memory is counted the same way for every algorithm, so the numbers
+     * can be compared: it is the search state the query needs allocated, not
+     * only the part it touched. That is the state kept for every cell of the
+     * grid (the arrays of a SearchWorkspace, the off-heap segments of
+     * OffHeapSearch, the reached bitmap of IDA*) or the hash table of a sparse
+     * workspace, plus the fixed tables (the transposition table of IDA*) and
+     * the frontier, stacks and lists at their largest.
+     *
+     * @return The estimated number of bytes of search state.
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return The number of nodes in the path, without the start and the goal.
+     */
+    public int getNrOfNodesInPath() {
+        return Math.max(0, path.length - 2);
+    }
+}
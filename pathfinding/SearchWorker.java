@@ -0,0 +1,264 @@
+package pathfinding;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import javax.swing.SwingWorker;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * Runs a search on a background thread, so the Event Dispatch Thread is never
+ * blocked. The exploration events are collected in batches and published at
+ * most once per frame (60 times per second); the panel applies each batch in
+ * process() and repaints. The search can be slowed down, paused, advanced one
+ * node at a time or cancelled while it runs. In full speed mode no exploration
+ * events are collected at all and only the result is delivered to done(); the
+ * search still checks for cancellation every thousand or so nodes.
+ *
+ * The events can also be recorded into a trace file (see TraceRecorder), in
+ * full speed mode too.
+ *
+ * An event is a long: its type (PUSHED or EXPANDED) in the upper 32 bits and the
+ * cell in the lower 32 bits.
+ */
+public abstract class SearchWorker extends SwingWorker<SearchResult, long[]> {
+
+    public static final int PUSHED = 1;
+    public static final int EXPANDED = 2;
+
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+
+    /**
+     * In full speed mode, how many nodes are expanded between two checks for
+     * cancellation.
+     */
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    private final GridSearch.Algorithm algorithm;
+    private final GridSnapshot snapshot;
+    private final Heuristic heuristic;
+    private final boolean fullSpeed;
+
+    private Path traceFile;
+    private long nrOfTracedEvents;
+
+    private volatile int delay;
+    private boolean paused;
+    private int steps;
+
+    private long[] batch = new long[256];
+    private int batchSize;
+    private long lastPublish;
+
+    /**
+     * @param algorithm The algorithm to run.
+     * @param snapshot The grid to search.
+     * @param heuristic The heuristic of the informed searches.
+     * @param delay The delay, in milliseconds, after each expanded node.
+     * @param fullSpeed True to run without publishing any exploration events.
+     */
+    public SearchWorker(GridSearch.Algorithm algorithm, GridSnapshot snapshot, Heuristic heuristic, int delay,
+            boolean fullSpeed) {
+        this.algorithm = algorithm;
+        this.snapshot = snapshot;
+        this.heuristic = heuristic;
+        this.delay = delay;
+        this.fullSpeed = fullSpeed;
+    }
+
+    public static int type(long event) {
+        return (int) (event >>> 32);
+    }
+
+    public static int cell(long event) {
+        return (int) event;
+    }
+
+    public GridSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public GridSearch.Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Records the events of the search into a trace file. Must be called
+     * before execute(). If the search is cancelled, the trace would be cut off
+     * (cancelling interrupts the worker, which closes the file channel), so
+     * the file is deleted instead.
+     *
+     * @param file The trace file.
+     */
+    public void record(Path file) {
+        this.traceFile = file;
+    }
+
+    public Path getTraceFile() {
+        return traceFile;
+    }
+
+    /**
+     * @return The number of events written to the trace file.
+     */
+    public long getNrOfTracedEvents() {
+        return nrOfTracedEvents;
+    }
+
+    @Override
+    protected SearchResult doInBackground() throws IOException {
+        SearchWorkspace workspace = SearchWorkspace.forThread(snapshot.getCellCount());
+        SearchListener animation = fullSpeed ? new SearchListener() {
+            private int expanded;
+
+            @Override
+            public void expanded(int cell) {
+                if (++expanded % CANCEL_CHECK_INTERVAL == 0 && isCancelled()) {
+                    throw new CancellationException();
+                }
+            }
+        } : new SearchListener() {
+            @Override
+            public void pushed(int cell) {
+                add(PUSHED, cell);
+            }
+
+            @Override
+            public void expanded(int cell) {
+                add(EXPANDED, cell);
+                awaitTurn();
+            }
+        };
+
+        TraceRecorder recorder = traceFile == null ? null
+                : new TraceRecorder(traceFile, snapshot, snapshot.getStart(), snapshot.getGoal(), algorithm.toString());
+        SearchListener listener = recorder == null ? animation : SearchListener.both(recorder, animation);
+
+        lastPublish = System.nanoTime();
+        try {
+            SearchResult result = GridSearch.search(algorithm, snapshot, snapshot.getStart(), snapshot.getGoal(),
+                    heuristic, workspace, listener);
+            flush();
+            return result;
+        } catch (CancellationException e) {
+            return null;
+        } finally {
+            if (recorder != null) {
+                nrOfTracedEvents = recorder.getNrOfEvents();
+                if (isCancelled()) {
+                    discard(recorder);
+                } else {
+                    recorder.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes and deletes the trace of a cancelled search.
+     */
+    private void discard(TraceRecorder recorder) throws IOException {
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            // The channel was already closed by the interrupt.
+        } finally {
+            Files.deleteIfExists(traceFile);
+        }
+    }
+
+    private void add(int type, int cell) {
+        if (batchSize == batch.length) {
+            batch = Arrays.copyOf(batch, batchSize * 2);
+        }
+        batch[batchSize++] = ((long) type << 32) | (cell & 0xFFFFFFFFL);
+        if (System.nanoTime() - lastPublish >= FRAME_NANOS) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (batchSize > 0) {
+            publish(Arrays.copyOf(batch, batchSize));
+            batchSize = 0;
+        }
+        lastPublish = System.nanoTime();
+    }
+
+    /**
+     * Called after every expanded node. Sleeps for the current delay, and
+     * blocks while the search is paused until it is resumed or stepped.
+     */
+    private void awaitTurn() {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+        try {
+            synchronized (this) {
+                if (paused) {
+                    flush();
+                    while (paused && steps == 0) {
+                        wait();
+                    }
+                    if (paused) {
+                        steps--;
+                        flush();
+                        return;
+                    }
+                }
+            }
+            int currentDelay = delay;
+            if (currentDelay > 0) {
+                Thread.sleep(currentDelay);
+            }
+        } catch (InterruptedException e) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * @param delay The delay, in milliseconds, after each expanded node.
+     */
+    public void setDelay(int delay) {
+        this.delay = delay;
+    }
+
+    public synchronized void setPaused(boolean paused) {
+        this.paused = paused;
+        notifyAll();
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Pauses the search, if it was running, and lets it expand one more node.
+     */
+    public synchronized void step() {
+        paused = true;
+        steps++;
+        notifyAll();
+    }
+
+    /**
+     * Applies a batch of exploration events. Runs on the Event Dispatch
+     * Thread.
+     *
+     * @param batches The batches published since the last call.
+     */
+    @Override
+    protected abstract void process(List<long[]> batches);
+
+    /**
+     * Shows the result of the search, or nothing if it was cancelled. Runs on
+     * the Event Dispatch Thread.
+     */
+    @Override
+    protected abstract void done();
+}
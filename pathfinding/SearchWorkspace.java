@@ -0,0 +1,442 @@
+package pathfinding;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * The reusable state of a search: the visited set, the g costs, the parents,
+ * the closed set, a queue/stack of cells and a binary heap.
+ *
+ * Instead of clearing its arrays before every query, the workspace stamps each
+ * cell with the generation in which it was written. Starting a new query only
+ * increments the generation, so a cell whose stamp differs from the current
+ * generation is simply unvisited. The cost of a query is therefore proportional
+ * to the cells it touches, not to the size of the grid.
+ *
+ * The arrays still take 16 bytes for every cell of the grid, which is too much
+ * for a world that is not held in memory (a TiledGrid). For those, the
+ * workspace can be started in sparse mode: the state of the touched cells is
+ * kept in an open-addressing hash table keyed by cell, stamped with the
+ * generation like the arrays, so its size follows what the query touches.
+ *
+ * A workspace is not thread safe. Use forThread() or forGrid() to get the one
+ * that belongs to the current thread.
+ */
+public final class SearchWorkspace {
+
+    private static final ThreadLocal<SearchWorkspace> POOL = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    private int[] visitedStamp = new int[0];
+    private int[] closedStamp = new int[0];
+    private int[] g = new int[0];
+    private int[] parent = new int[0];
+    private int generation;
+    private int nrOfTouchedCells;
+    private int cells;
+
+    // The sparse mode: slot i holds cell slotCell[i] if slotStamp[i] is the generation.
+    private boolean sparse;
+    private int[] slotCell = new int[0];
+    private int[] slotStamp = new int[0];
+    private int[] slotClosed = new int[0];
+    private int[] slotG = new int[0];
+    private int[] slotParent = new int[0];
+
+    private int[] open = new int[16];
+    private int openHead, openTail, peakOpenSize;
+
+    private long[] heap = new long[16];
+    private int heapSize, peakHeapSize;
+
+    /**
+     * Returns the workspace of the current thread, ready for a new query on a
+     * grid with the given number of cells.
+     *
+     * @param cells The number of cells of the grid that will be searched.
+     * @return The workspace of the current thread.
+     */
+    public static SearchWorkspace forThread(int cells) {
+        SearchWorkspace workspace = POOL.get();
+        workspace.begin(cells);
+        return workspace;
+    }
+
+    /**
+     * Returns the workspace of the current thread, ready for a new query on the
+     * given grid: in sparse mode for a TiledGrid or an OffHeapGrid, which are
+     * used for worlds too big for per-cell arrays on the heap, and with the
+     * dense arrays for any other grid.
+     *
+     * @param grid The grid that will be searched.
+     * @return The workspace of the current thread.
+     */
+    public static SearchWorkspace forGrid(GridMap grid) {
+        SearchWorkspace workspace = POOL.get();
+        if (grid instanceof TiledGrid || grid instanceof OffHeapGrid) {
+            workspace.beginSparse();
+        } else {
+            workspace.begin(grid.getColumns() * grid.getRows());
+        }
+        return workspace;
+    }
+
+    /**
+     * Starts a new query. The arrays only grow when a bigger grid is searched;
+     * otherwise the generation is incremented and nothing is cleared.
+     *
+     * @param cells The number of cells of the grid that will be searched.
+     */
+    public void begin(int cells) {
+        if (visitedStamp.length < cells) {
+            visitedStamp = new int[cells];
+            closedStamp = new int[cells];
+            g = new int[cells];
+            parent = new int[cells];
+        }
+        this.cells = cells;
+        sparse = false;
+        reset();
+    }
+
+    /**
+     * Starts a new query in sparse mode, for a grid of any size. The hash
+     * table keeps the capacity of the previous sparse queries and grows while
+     * the query touches more cells.
+     */
+    public void beginSparse() {
+        if (slotCell.length == 0) {
+            allocateTable(1024);
+        }
+        sparse = true;
+        reset();
+    }
+
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    private void reset() {
+        if (++generation == 0) {
+            // After 2^32 queries the stamps wrap around, so they are cleared once.
+            Arrays.fill(visitedStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            Arrays.fill(slotStamp, 0);
+            Arrays.fill(slotClosed, 0);
+            generation = 1;
+        }
+        nrOfTouchedCells = 0;
+        openHead = 0;
+        openTail = 0;
+        peakOpenSize = 0;
+        heapSize = 0;
+        peakHeapSize = 0;
+    }
+
+    public boolean isVisited(int cell) {
+        if (sparse) {
+            return find(cell) >= 0;
+        }
+        return visitedStamp[cell] == generation;
+    }
+
+    /**
+     * Marks a cell as visited, or updates it if it was already visited.
+     *
+     * @param cell The cell.
+     * @param from The cell it was reached from.
+     * @param cost The cost of the path from the start to the cell.
+     */
+    public void visit(int cell, int from, int cost) {
+        if (sparse) {
+            int slot = insert(cell);
+            slotParent[slot] = from;
+            slotG[slot] = cost;
+            return;
+        }
+        if (visitedStamp[cell] != generation) {
+            visitedStamp[cell] = generation;
+            nrOfTouchedCells++;
+        }
+        parent[cell] = from;
+        g[cell] = cost;
+    }
+
+    /**
+     * @param cell A visited cell.
+     * @return The cost of the path from the start to the cell.
+     */
+    public int getG(int cell) {
+        return sparse ? slotG[find(cell)] : g[cell];
+    }
+
+    /**
+     * @param cell A visited cell.
+     * @return The cell it was reached from.
+     */
+    public int getParent(int cell) {
+        return sparse ? slotParent[find(cell)] : parent[cell];
+    }
+
+    public boolean isClosed(int cell) {
+        if (sparse) {
+            int slot = find(cell);
+            return slot >= 0 && slotClosed[slot] == generation;
+        }
+        return closedStamp[cell] == generation;
+    }
+
+    /**
+     * Closes a cell, which must have been visited.
+     *
+     * @param cell The cell.
+     */
+    public void close(int cell) {
+        if (sparse) {
+            slotClosed[find(cell)] = generation;
+        } else {
+            closedStamp[cell] = generation;
+        }
+    }
+
+    /**
+     * @return The slot of a cell in the hash table, or -1 if it was not
+     * visited.
+     */
+    private int find(int cell) {
+        int mask = slotCell.length - 1;
+        for (int slot = hash(cell) & mask; slotStamp[slot] == generation; slot = (slot + 1) & mask) {
+            if (slotCell[slot] == cell) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The slot of a cell in the hash table, taken for it if it was not
+     * visited yet.
+     */
+    private int insert(int cell) {
+        if (2 * (nrOfTouchedCells + 1) > slotCell.length) {
+            growTable();
+        }
+        int mask = slotCell.length - 1;
+        int slot = hash(cell) & mask;
+        while (slotStamp[slot] == generation) {
+            if (slotCell[slot] == cell) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slotStamp[slot] = generation;
+        slotCell[slot] = cell;
+        nrOfTouchedCells++;
+        return slot;
+    }
+
+    private void allocateTable(int capacity) {
+        slotCell = new int[capacity];
+        slotStamp = new int[capacity];
+        slotClosed = new int[capacity];
+        slotG = new int[capacity];
+        slotParent = new int[capacity];
+    }
+
+    /**
+     * Doubles the hash table and moves the cells of the current query into it;
+     * the new slots are zeroed, so the stale ones simply disappear.
+     */
+    private void growTable() {
+        int[] oldCell = slotCell;
+        int[] oldStamp = slotStamp;
+        int[] oldClosed = slotClosed;
+        int[] oldG = slotG;
+        int[] oldParent = slotParent;
+        allocateTable(oldCell.length * 2);
+
+        int mask = slotCell.length - 1;
+        for (int i = 0; i < oldCell.length; i++) {
+            if (oldStamp[i] == generation) {
+                int slot = hash(oldCell[i]) & mask;
+                while (slotStamp[slot] == generation) {
+                    slot = (slot + 1) & mask;
+                }
+                slotStamp[slot] = generation;
+                slotCell[slot] = oldCell[i];
+                slotClosed[slot] = oldClosed[i];
+                slotG[slot] = oldG[i];
+                slotParent[slot] = oldParent[i];
+            }
+        }
+    }
+
+    /**
+     * Mixes the bits of a cell (the finalizer of MurmurHash3), so the cells of
+     * a row do not fill one run of the table.
+     */
+    private static int hash(int cell) {
+        cell ^= cell >>> 16;
+        cell *= 0x85EBCA6B;
+        cell ^= cell >>> 13;
+        return cell;
+    }
+
+    /**
+     * @return The number of cells visited in the current query.
+     */
+    public int getNrOfTouchedCells() {
+        return nrOfTouchedCells;
+    }
+
+    /**
+     * Follows the parents from the goal back to the start.
+     *
+     * @param start The starting cell.
+     * @param goal The goal, which must have been visited.
+     * @return The cells of the path, from start to goal.
+     */
+    public int[] pathTo(int start, int goal) {
+        int length = 1;
+        for (int cell = goal; cell != start; cell = getParent(cell)) {
+            length++;
+        }
+        int[] path = new int[length];
+        int cell = goal;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = cell;
+            cell = getParent(cell);
+        }
+        return path;
+    }
+
+    /**
+     * Adds a cell to the end of the queue/stack.
+     *
+     * @param cell The cell.
+     */
+    public void addLast(int cell) {
+        if (openTail == open.length) {
+            if (openHead > 0) {
+                System.arraycopy(open, openHead, open, 0, openTail - openHead);
+                openTail -= openHead;
+                openHead = 0;
+            } else {
+                open = Arrays.copyOf(open, open.length * 2);
+            }
+        }
+        open[openTail++] = cell;
+        if (openTail - openHead > peakOpenSize) {
+            peakOpenSize = openTail - openHead;
+        }
+    }
+
+    /**
+     * Removes the first cell of the queue (FIFO).
+     *
+     * @return The cell.
+     */
+    public int removeFirst() {
+        return open[openHead++];
+    }
+
+    /**
+     * Removes the last cell of the stack (LIFO).
+     *
+     * @return The cell.
+     */
+    public int removeLast() {
+        return open[--openTail];
+    }
+
+    public boolean isOpenEmpty() {
+        return openHead == openTail;
+    }
+
+    /**
+     * @return The number of cells in the queue/stack.
+     */
+    public int getOpenSize() {
+        return openTail - openHead;
+    }
+
+    /**
+     * Adds a cell to the binary heap. Cells with the same priority are removed
+     * in ascending index order.
+     *
+     * @param priority The priority; smaller is removed first.
+     * @param cell The cell.
+     */
+    public void heapPush(int priority, int cell) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        long entry = ((long) priority << 32) | cell;
+        int i = heapSize++;
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (heap[up] <= entry) {
+                break;
+            }
+            heap[i] = heap[up];
+            i = up;
+        }
+        heap[i] = entry;
+        if (heapSize > peakHeapSize) {
+            peakHeapSize = heapSize;
+        }
+    }
+
+    /**
+     * Removes the cell with the smallest priority from the binary heap.
+     *
+     * @return The cell.
+     */
+    public int heapPop() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (last <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return (int) top;
+    }
+
+    public boolean isHeapEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * @return The largest number of entries the heap held in the current query.
+     */
+    public int getPeakHeapSize() {
+        return peakHeapSize;
+    }
+
+    /**
+     * Estimates the memory the current query needs allocated (see
+     * SearchResult.getMemoryBytes()): 16 bytes for every cell of the grid (the
+     * two stamps, g and parent), or in sparse mode 20 bytes for every slot of
+     * the hash table, plus the largest size of the queue/stack and of the
+     * heap.
+     *
+     * @return The estimated number of bytes.
+     */
+    public long getMemoryBytes() {
+        long cellBytes = sparse ? 20L * slotCell.length : 16L * cells;
+        return cellBytes + 4L * peakOpenSize + 8L * peakHeapSize;
+    }
+}
@@ -0,0 +1,59 @@
+package pathfinding;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * The grid that is shared between the editors (the mouse handlers and the
+ * buttons) and the searches. It publishes the current GridSnapshot through an
+ * atomic reference: a search reads one snapshot and runs against it without
+ * any locking, while the editors keep publishing new snapshots.
+ */
+public final class SharedGrid {
+
+    private final AtomicReference<GridSnapshot> current;
+
+    public SharedGrid(GridSnapshot initial) {
+        current = new AtomicReference<>(initial);
+    }
+
+    /**
+     * @return The latest published snapshot.
+     */
+    public GridSnapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * @return The version of the latest published snapshot.
+     */
+    public long getVersion() {
+        return current.get().getVersion();
+    }
+
+    /**
+     * Applies an edit to the latest snapshot and publishes the result. If
+     * another editor publishes first, the edit is retried against the newer
+     * snapshot, so the edit function must not have side effects.
+     *
+     * @param edit The function that derives the new snapshot.
+     * @return The snapshot that was published.
+     */
+    public GridSnapshot update(UnaryOperator<GridSnapshot> edit) {
+        return current.updateAndGet(edit);
+    }
+
+    /**
+     * Determines whether a result computed against the given snapshot is out of
+     * date.
+     *
+     * @param snapshot The snapshot the result was computed against.
+     * @return True if a newer snapshot has been published since.
+     */
+    public boolean isStale(GridSnapshot snapshot) {
+        return current.get().getVersion() != snapshot.getVersion();
+    }
+}
@@ -0,0 +1,317 @@
+package pathfinding;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * A grid that is split into square tiles which are stored as files in a
+ * directory and loaded only when a search reaches them. The loaded tiles are
+ * kept in a bounded LRU cache, so a world of any size can be searched with a
+ * fixed amount of memory for the grid itself.
+ *
+ * The directory contains a "world.hdr" file (magic, columns, rows, tile size)
+ * and one "tile-x-y.bin" file per tile, with one byte per cell: 0 for an
+ * obstacle, otherwise the cost of entering the cell. A tile without a file is
+ * free terrain that costs 1 everywhere.
+ *
+ * Neighbors are looked up with global coordinates, so a search crosses tile
+ * boundaries without knowing about the tiles. The state of the search must
+ * not be dense either: the workspace that SearchWorkspace.forGrid() returns
+ * for a TiledGrid only stores the cells the search touches, so GridSearch,
+ * Fringe and Theta* need memory for those only, and IDA* needs one bit per
+ * cell. OffHeapSearch is meant for an OffHeapGrid and keeps state for every
+ * cell. Consecutive lookups in the same
+ * tile are served from the last tile that was used, without going through the
+ * cache, so only the moves from one tile to another touch the cache. Those are
+ * what the hits and misses count, which shows how the locality of a search
+ * translates into I/O.
+ */
+public final class TiledGrid implements GridMap {
+
+    private static final int MAGIC = 0x50465449; // "PFTI"
+    private static final String HEADER_FILE = "world.hdr";
+    private static final byte[] FREE_TILE_MARKER = new byte[0];
+    /**
+     * The largest tile size whose tiles (tileSize * tileSize bytes) fit in an
+     * array.
+     */
+    public static final int MAX_TILE_SIZE = 46340;
+
+    private final Path directory;
+    private final int columns, rows, tileSize;
+    private final int tileColumns;
+    private final LinkedHashMap<Integer, byte[]> cache;
+    private final byte[] freeTile;
+
+    /**
+     * The last tile that was used. It is immutable, so it can be read without
+     * the lock; a thread that sees an older one only takes the slow path.
+     */
+    private LastTile last = new LastTile(-1, null);
+
+    private long hits, misses, evictions, bytesRead;
+
+    private TiledGrid(Path directory, int columns, int rows, int tileSize, final int cachedTiles) {
+        checkTileSize(tileSize);
+        this.directory = directory;
+        this.columns = columns;
+        this.rows = rows;
+        this.tileSize = tileSize;
+        this.tileColumns = (columns + tileSize - 1) / tileSize;
+        this.freeTile = new byte[tileSize * tileSize];
+        Arrays.fill(freeTile, (byte) 1);
+        this.cache = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                if (size() > cachedTiles) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Opens a tiled world. No tile is read until a cell in it is looked up.
+     *
+     * @param directory The directory of the world.
+     * @param cachedTiles The maximum number of tiles kept in the cache (the last
+     * tile used is kept as well, even after it was evicted).
+     * @return The grid.
+     * @throws IOException If the header can not be read.
+     */
+    public static TiledGrid open(Path directory, int cachedTiles) throws IOException {
+        if (cachedTiles < 1) {
+            throw new IllegalArgumentException("At least one tile must be cached");
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(directory.resolve(HEADER_FILE)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a tiled world: " + directory);
+            }
+            int columns = in.readInt();
+            int rows = in.readInt();
+            int tileSize = in.readInt();
+            if (columns <= 0 || rows <= 0 || tileSize <= 0 || tileSize > MAX_TILE_SIZE
+                    || (long) columns * rows > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt tiled world: " + directory);
+            }
+            return new TiledGrid(directory, columns, rows, tileSize, cachedTiles);
+        }
+    }
+
+    /**
+     * Splits a grid into tiles and writes them to a directory. Tiles that are
+     * completely free terrain are not written.
+     *
+     * @param source The grid to split.
+     * @param directory The directory of the world; it is created if needed.
+     * @param tileSize The number of cells on each side of a tile, from 1 to
+     * MAX_TILE_SIZE.
+     * @throws IOException If the files can not be written.
+     */
+    public static void write(GridMap source, Path directory, int tileSize) throws IOException {
+        checkTileSize(tileSize);
+        Files.createDirectories(directory);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(directory.resolve(HEADER_FILE)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(source.getColumns());
+            out.writeInt(source.getRows());
+            out.writeInt(tileSize);
+        }
+
+        byte[] tile = new byte[tileSize * tileSize];
+        for (int tileY = 0; tileY * tileSize < source.getRows(); tileY++) {
+            for (int tileX = 0; tileX * tileSize < source.getColumns(); tileX++) {
+                boolean free = true;
+                for (int y = 0; y < tileSize; y++) {
+                    for (int x = 0; x < tileSize; x++) {
+                        int column = tileX * tileSize + x;
+                        int row = tileY * tileSize + y;
+                        byte cell;
+                        if (column >= source.getColumns() || row >= source.getRows()) {
+                            cell = 1;
+                        } else if (source.isBlocked(column, row)) {
+                            cell = 0;
+                        } else {
+                            cell = (byte) Math.min(255, source.getCost(column, row));
+                        }
+                        tile[y * tileSize + x] = cell;
+                        free &= cell == 1;
+                    }
+                }
+                Path file = directory.resolve(tileFileName(tileX, tileY));
+                if (free) {
+                    Files.deleteIfExists(file);
+                } else {
+                    Files.write(file, tile);
+                }
+            }
+        }
+    }
+
+    private static void checkTileSize(int tileSize) {
+        if (tileSize <= 0 || tileSize > MAX_TILE_SIZE) {
+            throw new IllegalArgumentException("Invalid tile size " + tileSize);
+        }
+    }
+
+    private static String tileFileName(int tileX, int tileY) {
+        return "tile-" + tileX + "-" + tileY + ".bin";
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    @Override
+    public boolean isBlocked(int column, int row) {
+        if (column < 0 || row < 0 || column >= columns || row >= rows) {
+            return true;
+        }
+        return cell(column, row) == 0;
+    }
+
+    /**
+     * @return The cost of entering the cell; obstacles and the cells outside
+     * the grid cost 1, as GridMap requires, although they can not be entered.
+     */
+    @Override
+    public int getCost(int column, int row) {
+        if (column < 0 || row < 0 || column >= columns || row >= rows) {
+            return 1;
+        }
+        return Math.max(1, cell(column, row) & 0xFF);
+    }
+
+    private byte cell(int column, int row) {
+        int tileX = column / tileSize;
+        int tileY = row / tileSize;
+        int key = tileY * tileColumns + tileX;
+        LastTile current = last;
+        byte[] tile = current.key == key ? current.tile : tile(key, tileX, tileY);
+        return tile[(row % tileSize) * tileSize + column % tileSize];
+    }
+
+    /**
+     * Returns a tile from the cache, loading it from the disk on a miss, and
+     * makes it the last tile.
+     */
+    private synchronized byte[] tile(int key, int tileX, int tileY) {
+        byte[] tile = cache.get(key);
+        if (tile != null) {
+            hits++;
+            tile = tile == FREE_TILE_MARKER ? freeTile : tile;
+            last = new LastTile(key, tile);
+            return tile;
+        }
+
+        misses++;
+        try {
+            tile = Files.readAllBytes(directory.resolve(tileFileName(tileX, tileY)));
+            if (tile.length != tileSize * tileSize) {
+                throw new IOException("Corrupt tile " + tileX + "," + tileY + " in " + directory);
+            }
+            bytesRead += tile.length;
+        } catch (NoSuchFileException e) {
+            tile = FREE_TILE_MARKER;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cache.put(key, tile);
+        tile = tile == FREE_TILE_MARKER ? freeTile : tile;
+        last = new LastTile(key, tile);
+        return tile;
+    }
+
+    private static final class LastTile {
+
+        private final int key;
+        private final byte[] tile;
+
+        private LastTile(int key, byte[] tile) {
+            this.key = key;
+            this.tile = tile;
+        }
+    }
+
+    /**
+     * @return The number of moves to another tile that were served from the
+     * cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of moves to another tile that had to go to the disk.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The number of tiles that were dropped from the cache to make
+     * room for others.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return The number of bytes read from tile files.
+     */
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return The number of tiles currently in the cache.
+     */
+    public synchronized int getCachedTiles() {
+        return cache.size();
+    }
+
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Resets the counters, e.g. before measuring a single search. The cached
+     * tiles are kept.
+     */
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        bytesRead = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TiledGrid %dx%d, tiles of %d: %d hits, %d misses (%.1f%% hit ratio), %d evictions, %d bytes read",
+                columns, rows, tileSize, hits, misses, getHitRatio() * 100, evictions, bytesRead);
+    }
+}
@@ -0,0 +1,238 @@
+package pathfinding;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * Reads a trace file written by TraceRecorder and replays its events to a
+ * SearchListener, a few at a time, so the caller decides how fast the search
+ * is replayed. The file is read sequentially through a FileChannel into a
+ * direct ByteBuffer; only the header is decoded when the trace is opened.
+ *
+ * Every cell of the file, in the header and in the events, is checked to be
+ * inside the grid, so a corrupt trace fails with an IOException instead of
+ * reaching the listener.
+ */
+public final class TracePlayer implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final int columns, rows, start, goal;
+    private final String label;
+    private final BitSet blocked;
+    private int previousCell;
+    private boolean finished;
+
+    private TracePlayer(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            buffer.flip();
+            fill(22);
+            if (buffer.getInt() != TraceRecorder.MAGIC || buffer.get() != TraceRecorder.FORMAT_VERSION) {
+                throw new IOException("Not a trace file: " + file);
+            }
+            columns = buffer.getInt();
+            rows = buffer.getInt();
+            start = buffer.getInt();
+            goal = buffer.getInt();
+            if (columns <= 0 || rows <= 0 || (long) columns * rows > Integer.MAX_VALUE
+                    || start < 0 || start >= columns * rows || goal < 0 || goal >= columns * rows) {
+                throw new IOException("Corrupt trace file: " + file);
+            }
+
+            byte[] labelBytes = new byte[buffer.get() & 0xFF];
+            fill(labelBytes.length);
+            buffer.get(labelBytes);
+            label = new String(labelBytes, StandardCharsets.UTF_8);
+
+            int cells = columns * rows;
+            blocked = new BitSet(cells);
+            for (int cell = 0; cell < cells; cell += 8) {
+                fill(1);
+                int bits = buffer.get() & 0xFF;
+                for (int bit = 0; bit < 8 && cell + bit < cells; bit++) {
+                    if ((bits & (1 << bit)) != 0) {
+                        blocked.set(cell + bit);
+                    }
+                }
+            }
+            previousCell = start;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a trace file and reads its header.
+     *
+     * @param file The trace file.
+     * @return The player, positioned at the first event.
+     * @throws IOException If the file can not be read or is not a trace.
+     */
+    public static TracePlayer open(Path file) throws IOException {
+        return new TracePlayer(file);
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getGoal() {
+        return goal;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @param version The version of the new snapshot.
+     * @return The grid the trace was recorded on.
+     */
+    public GridSnapshot toSnapshot(long version) {
+        return GridSnapshot.of(columns, rows, blocked, start, goal, version);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Replays up to the given number of events.
+     *
+     * @param listener Receives the events.
+     * @param maxEvents The maximum number of events to replay.
+     * @return The number of events replayed; less than maxEvents only at the
+     * end of the trace.
+     * @throws IOException If the file can not be read or is truncated.
+     */
+    public int replay(SearchListener listener, int maxEvents) throws IOException {
+        int replayed = 0;
+        while (replayed < maxEvents && next(listener) != TraceRecorder.END) {
+            replayed++;
+        }
+        return replayed;
+    }
+
+    /**
+     * Replays the next event.
+     *
+     * @param listener Receives the event.
+     * @return The tag of the event, TraceRecorder.END at the end of the trace.
+     * @throws IOException If the file can not be read or is truncated.
+     */
+    public byte next(SearchListener listener) throws IOException {
+        if (finished) {
+            return TraceRecorder.END;
+        }
+        fill(1);
+        byte tag = buffer.get();
+        switch (tag) {
+            case TraceRecorder.END:
+                finished = true;
+                break;
+            case TraceRecorder.PUSHED:
+                previousCell = checkCell(previousCell + unzigzag(getVarint()));
+                listener.pushed(previousCell);
+                break;
+            case TraceRecorder.EXPANDED:
+                previousCell = checkCell(previousCell + unzigzag(getVarint()));
+                listener.expanded(previousCell);
+                break;
+            case TraceRecorder.PATH:
+                int length = getVarint();
+                if (length < 0 || length > columns * rows) {
+                    throw new IOException("Corrupt trace file: a path of " + length + " cells");
+                }
+                int[] path = new int[length];
+                int cell = previousCell;
+                for (int i = 0; i < path.length; i++) {
+                    cell = checkCell(cell + unzigzag(getVarint()));
+                    path[i] = cell;
+                }
+                listener.pathFound(path);
+                break;
+            default:
+                throw new IOException("Corrupt trace: unknown event " + tag);
+        }
+        return tag;
+    }
+
+    /**
+     * Replays every remaining event.
+     *
+     * @param listener Receives the events.
+     * @throws IOException If the file can not be read or is truncated.
+     */
+    public void replayAll(SearchListener listener) throws IOException {
+        while (next(listener) != TraceRecorder.END) {
+            // Keep replaying.
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int checkCell(int cell) throws IOException {
+        if (cell < 0 || cell >= columns * rows) {
+            throw new IOException("Corrupt trace file: cell " + cell + " outside of the grid");
+        }
+        return cell;
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int getVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            fill(1);
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt trace: varint too long");
+    }
+
+    /**
+     * Makes sure that at least the given number of bytes can be read from the
+     * buffer, reading more of the file if needed.
+     */
+    private void fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated trace file");
+            }
+        }
+        buffer.flip();
+    }
+}
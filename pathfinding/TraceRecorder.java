@@ -0,0 +1,207 @@
+package pathfinding;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * A SearchListener that streams the exploration events of a search into a
+ * compact binary trace file, which TracePlayer can replay later without running
+ * the search again. The events are encoded into a direct ByteBuffer and written
+ * through a FileChannel whenever the buffer fills up, so recording costs a few
+ * bytes per event and almost no allocation, even in headless runs.
+ *
+ * Format (big-endian):
+ *
+ * header: magic "PFTR" (int), format version (byte), columns (int), rows (int),
+ * start (int), goal (int), label length (byte) and UTF-8 label, obstacle bitmap
+ * (one bit per cell, ceil(cells / 8) bytes)
+ *
+ * events: a tag byte followed by its data. PUSHED and EXPANDED carry the
+ * difference to the previous cell of an event as a zigzag varint, which is one
+ * or two bytes for neighboring cells. PATH carries the length of the path as a
+ * varint and then its cells as zigzag varint differences. END has no data.
+ */
+public final class TraceRecorder implements SearchListener, AutoCloseable {
+
+    public static final int MAGIC = 0x50465452; // "PFTR"
+    public static final byte FORMAT_VERSION = 1;
+
+    public static final byte END = 0;
+    public static final byte PUSHED = 1;
+    public static final byte EXPANDED = 2;
+    public static final byte PATH = 3;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_EVENT_BYTES = 1 + 5;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private int previousCell;
+    private long nrOfEvents;
+    private boolean closed;
+
+    /**
+     * Creates (or truncates) a trace file and writes its header.
+     *
+     * @param file The trace file.
+     * @param grid The grid that is searched.
+     * @param start The index of the starting cell.
+     * @param goal The index of the goal.
+     * @param label A short description, e.g. the name of the algorithm.
+     * @throws IOException If the file can not be written.
+     */
+    public TraceRecorder(Path file, GridMap grid, int start, int goal, String label) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        try {
+            byte[] labelBytes = label.getBytes(StandardCharsets.UTF_8);
+            int labelLength = Math.min(labelBytes.length, 255);
+
+            buffer.putInt(MAGIC);
+            buffer.put(FORMAT_VERSION);
+            buffer.putInt(grid.getColumns());
+            buffer.putInt(grid.getRows());
+            buffer.putInt(start);
+            buffer.putInt(goal);
+            buffer.put((byte) labelLength);
+            buffer.put(labelBytes, 0, labelLength);
+
+            int bits = 0;
+            int nrOfBits = 0;
+            for (int row = 0; row < grid.getRows(); row++) {
+                for (int column = 0; column < grid.getColumns(); column++) {
+                    if (grid.isBlocked(column, row)) {
+                        bits |= 1 << nrOfBits;
+                    }
+                    if (++nrOfBits == 8) {
+                        putByte(bits);
+                        bits = 0;
+                        nrOfBits = 0;
+                    }
+                }
+            }
+            if (nrOfBits > 0) {
+                putByte(bits);
+            }
+            previousCell = start;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void pushed(int cell) {
+        event(PUSHED, cell);
+    }
+
+    @Override
+    public void expanded(int cell) {
+        event(EXPANDED, cell);
+    }
+
+    @Override
+    public void pathFound(int[] path) {
+        try {
+            ensureSpace(MAX_EVENT_BYTES);
+            buffer.put(PATH);
+            putVarint(path.length);
+            int previous = previousCell;
+            for (int cell : path) {
+                ensureSpace(MAX_EVENT_BYTES);
+                putVarint(zigzag(cell - previous));
+                previous = cell;
+            }
+            nrOfEvents++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void event(byte tag, int cell) {
+        try {
+            ensureSpace(MAX_EVENT_BYTES);
+            buffer.put(tag);
+            putVarint(zigzag(cell - previousCell));
+            previousCell = cell;
+            nrOfEvents++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The number of events recorded so far.
+     */
+    public long getNrOfEvents() {
+        return nrOfEvents;
+    }
+
+    /**
+     * @return The number of bytes written so far, including the buffered
+     * ones.
+     * @throws IOException If the size of the file can not be read.
+     */
+    public long getSize() throws IOException {
+        return channel.position() + buffer.position();
+    }
+
+    /**
+     * Writes the END tag and everything still buffered, and closes the file.
+     *
+     * @throws IOException If the file can not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            ensureSpace(1);
+            buffer.put(END);
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void putByte(int value) throws IOException {
+        ensureSpace(1);
+        buffer.put((byte) value);
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,121 @@
+package pathfinding;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Olen Shofiti email: olenshofiti@gmail.com
+ *
+ * Compression of paths into waypoints. A path of the searches is every cell
+ * from the start to the goal, a staircase of single steps. Its waypoints are
+ * only the cells where it turns, plus the start and the goal, in a plain int[]
+ * of cell indexes; following straight lines between them gives the path back.
+ *
+ * compress() is lossless: expand() returns exactly the original cells.
+ * smooth() goes further and drops every waypoint that can be skipped with a
+ * clear line of sight, which turns the staircases into any-angle paths like the
+ * ones of Theta*.
+ */
+public final class Waypoints {
+
+    private Waypoints() {
+    }
+
+    /**
+     * Keeps the start, the goal and the cells where the direction of the path
+     * changes.
+     *
+     * @param path The cells of a path.
+     * @param columns The number of columns of the grid.
+     * @return The waypoints of the path.
+     */
+    public static int[] compress(int[] path, int columns) {
+        if (path.length <= 2) {
+            return path.clone();
+        }
+        int[] waypoints = new int[path.length];
+        int count = 0;
+        waypoints[count++] = path[0];
+        for (int i = 1; i < path.length - 1; i++) {
+            if (!isStraight(path[i - 1], path[i], path[i + 1], columns)) {
+                waypoints[count++] = path[i];
+            }
+        }
+        waypoints[count++] = path[path.length - 1];
+        return Arrays.copyOf(waypoints, count);
+    }
+
+    /**
+     * Keeps the start, the goal and, from every waypoint, the farthest later
+     * cell of the path that can be reached in a straight line without touching
+     * an obstacle (see LineOfSight).
+     *
+     * @param grid The grid of the path.
+     * @param path The cells (or waypoints) of a path.
+     * @return The any-angle waypoints of the path.
+     */
+    public static int[] smooth(GridMap grid, int[] path) {
+        if (path.length <= 2) {
+            return path.clone();
+        }
+        int[] waypoints = new int[path.length];
+        int count = 0;
+        waypoints[count++] = path[0];
+        int from = 0;
+        while (from < path.length - 1) {
+            int to = from + 1;
+            while (to + 1 < path.length && LineOfSight.isClear(grid, path[from], path[to + 1])) {
+                to++;
+            }
+            waypoints[count++] = path[to];
+            from = to;
+        }
+        return Arrays.copyOf(waypoints, count);
+    }
+
+    /**
+     * Follows straight lines between the waypoints.
+     *
+     * @param waypoints The waypoints of a path.
+     * @param columns The number of columns of the grid.
+     * @return The cells of the path, from start to goal.
+     */
+    public static int[] expand(int[] waypoints, int columns) {
+        if (waypoints.length <= 1) {
+            return waypoints.clone();
+        }
+        int[] path = new int[16];
+        int length = 0;
+        path[length++] = waypoints[0];
+        for (int i = 1; i < waypoints.length; i++) {
+            int[] segment = LineOfSight.cells(columns, waypoints[i - 1], waypoints[i]);
+            if (length + segment.length > path.length) {
+                path = Arrays.copyOf(path, Math.max(path.length * 2, length + segment.length));
+            }
+            // The first cell of a segment is the last one of the previous segment.
+            System.arraycopy(segment, 1, path, length, segment.length - 1);
+            length += segment.length - 1;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    /**
+     * @param waypoints The waypoints of a path.
+     * @param columns The number of columns of the grid.
+     * @return The length of the path, in cells, measured along the straight
+     * lines between the waypoints.
+     */
+    public static double length(int[] waypoints, int columns) {
+        double length = 0;
+        for (int i = 1; i < waypoints.length; i++) {
+            length += Math.hypot(waypoints[i] % columns - waypoints[i - 1] % columns,
+                    waypoints[i] / columns - waypoints[i - 1] / columns);
+        }
+        return length;
+    }
+
+    private static boolean isStraight(int previous, int cell, int next, int columns) {
+        return cell % columns - previous % columns == next % columns - cell % columns
+                && cell / columns - previous / columns == next / columns - cell / columns;
+    }
+}